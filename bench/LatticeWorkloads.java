@@ -0,0 +1,128 @@
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.ForkJoinPool;
+
+import benchmarks.Workloads;
+
+
+//the lattice side of the JMH benchmarks, see benchmarks.Workloads. every lattice starts from the same random spins
+//and seeds, so runs can be compared with each other.
+public class LatticeWorkloads implements Workloads {
+
+	private Lattice lattice;
+	private LatticeRandom rand;
+	private Path mappedFile;
+	private MappedSpinStorage mapped;
+	private ForkJoinPool pool;
+	private CheckerboardGlauber checkerboard;
+	private ReplicaBatch batch;
+	private double[] series;
+	private double seriesT;
+	private int seriesN;
+
+	public void setUp(int n, double T, String storage) throws Exception {
+
+		SpinStorage spins;
+		if(storage.equals("byte")){
+			spins = new ByteSpinStorage(n);
+		}else if(storage.equals("packed")){
+			spins = new PackedSpinStorage(n);
+		}else if(storage.equals("mapped")){
+			mappedFile = Files.createTempFile("lattice", ".spins");
+			spins = mapped = new MappedSpinStorage(n, mappedFile);
+		}else{
+			throw new IllegalArgumentException("storage must be byte, packed or mapped, not " + storage);
+		}
+
+		spins.fillRandom(new LatticeRandom.SplitMix(1L));
+		lattice = new Lattice(spins, T);
+		lattice.setSeed(2L);
+		rand = new LatticeRandom.SplitMix(7L);
+	}
+
+	public void setUpCheckerboard(int n, double T, int threads){
+
+		SpinStorage spins = new ByteSpinStorage(n);
+		spins.fillRandom(new LatticeRandom.SplitMix(1L));
+		lattice = new Lattice(spins, T);
+		pool = new ForkJoinPool(threads);
+		checkerboard = new CheckerboardGlauber(lattice, pool, new LatticeRandom.SplitMix(2L));
+	}
+
+	public void setUpBatch(int n, double T, int nReplicas){
+		batch = new ReplicaBatch(n, nReplicas, T, new LatticeRandom.SplitMix(1L));
+	}
+
+	public void useGenerator(String kind){
+		lattice.setRandom(LatticeRandom.create(kind, 2L));
+		rand = LatticeRandom.create(kind, 7L);
+	}
+
+	public void setUpSeries(int n, double T, int nSamples){
+
+		SpinStorage spins = new ByteSpinStorage(n);
+		spins.fillRandom(new LatticeRandom.SplitMix(1L));
+		Lattice sampled = new Lattice(spins, T);
+		sampled.setSeed(2L);
+
+		series = new double[nSamples];
+		sampled.dynamicsRepeated(50*n*n, "g");
+		for(int i = 0; i < nSamples; i++){
+			sampled.dynamicsRepeated(n*n, "g");
+			series[i] = sampled.getMagnetisation();
+		}
+		seriesT = T;
+		seriesN = n;
+	}
+
+	public void tearDown() throws Exception {
+		lattice = null;
+		checkerboard = null;
+		batch = null;
+		if(pool != null) pool.shutdown();
+		pool = null;
+		if(mapped != null) mapped.close();
+		mapped = null;
+		if(mappedFile != null) Files.deleteIfExists(mappedFile);
+		mappedFile = null;
+	}
+
+	public void glauberDynamics(){
+		lattice.glauberDynamics();
+	}
+	public void kawasakiDynamics(){
+		lattice.kawasakiDynamics();
+	}
+	public void localKawasakiDynamics(){
+		lattice.localKawasakiDynamics();
+	}
+	public void multispinSweep(){
+		lattice.multispinSweeps(1);
+	}
+	public void checkerboardSweep(){
+		checkerboard.sweep();
+	}
+	public void batchSweep(){
+		batch.sweep();
+	}
+	public double nextDouble(){
+		return rand.nextDouble();
+	}
+	public double localEnergy(){
+		int n = lattice.getN();
+		return lattice.localEnergy(rand.nextInt(n), rand.nextInt(n));
+	}
+	public double systemEnergy(){
+		return lattice.systemEnergy();
+	}
+	public double systemMagnetisation(){
+		return lattice.systemMagnetisation();
+	}
+
+	public double suscepBootstrap(){
+		return Lattice.suscepBootstrap(series, seriesT, seriesN);
+	}
+	public double suscepJacknife(){
+		return Lattice.suscepJacknife(series, seriesT, seriesN);
+	}
+}
@@ -0,0 +1,56 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+//one sweep of a ReplicaBatch, in us per op. the batch makes n*n*replicas updates per op; compare with
+//replicas times n*n DynamicsBenchmark.glauberDynamics ops for the same work on separate lattices.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class BatchBenchmark {
+
+	@Param({"32", "256"})
+	int n;
+
+	@Param({"1", "16", "64"})
+	int replicas;
+
+	@Param({"1.8", "2.27", "3.0"})
+	double T;
+
+	private Workloads workloads;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		workloads = Workloads.create();
+		workloads.setUpBatch(n, T, replicas);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		workloads.tearDown();
+	}
+
+	@Benchmark
+	public void batchSweep(){
+		workloads.batchSweep();
+	}
+}
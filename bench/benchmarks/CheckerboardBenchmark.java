@@ -0,0 +1,56 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+//strong scaling of the checkerboard glauber sweep: one full sweep per op, in ms, on a pool of each number of
+//threads. the speedup at p threads is the 1 thread score over the p thread score.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CheckerboardBenchmark {
+
+	@Param({"256", "1024", "4096"})
+	int n;
+
+	@Param({"1", "2", "4", "8"})
+	int threads;
+
+	@Param({"2.27"})
+	double T;
+
+	private Workloads workloads;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		workloads = Workloads.create();
+		workloads.setUpCheckerboard(n, T, threads);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		workloads.tearDown();
+	}
+
+	@Benchmark
+	public void checkerboardSweep(){
+		workloads.checkerboardSweep();
+	}
+}
@@ -0,0 +1,84 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+//the lattice hot paths: single updates of each dynamics, a multispin sweep and the full scans, in ns per op.
+//a single update is one op, so updates/ns is 1/score; a multispin sweep is n*n updates.
+//add -prof gc for the bytes allocated per op.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class DynamicsBenchmark {
+
+	@Param({"32", "256", "1024"})
+	int n;
+
+	@Param({"1.5", "2.27", "4.0"})
+	double T;
+
+	private Workloads workloads;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		workloads = Workloads.create();
+		workloads.setUp(n, T, "byte");
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		workloads.tearDown();
+	}
+
+	@Benchmark
+	public void glauberDynamics(){
+		workloads.glauberDynamics();
+	}
+
+	@Benchmark
+	public void kawasakiDynamics(){
+		workloads.kawasakiDynamics();
+	}
+
+	@Benchmark
+	public void localKawasakiDynamics(){
+		workloads.localKawasakiDynamics();
+	}
+
+	@Benchmark
+	public void multispinSweep(){
+		workloads.multispinSweep();
+	}
+
+	@Benchmark
+	public double localEnergy(){
+		return workloads.localEnergy();
+	}
+
+	@Benchmark
+	public double systemEnergy(){
+		return workloads.systemEnergy();
+	}
+
+	@Benchmark
+	public double systemMagnetisation(){
+		return workloads.systemMagnetisation();
+	}
+}
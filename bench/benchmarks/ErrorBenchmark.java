@@ -0,0 +1,48 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+//bootstrap and jackknife susceptibility errors of 512 magnetisations of a 64 x 64 lattice, in us per estimate.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ErrorBenchmark {
+
+	@Param({"1.5", "2.27", "4.0"})
+	double T;
+
+	private Workloads workloads;
+
+	@Setup(Level.Trial)
+	public void setUp(){
+		workloads = Workloads.create();
+		workloads.setUpSeries(64, T, 512);
+	}
+
+	@Benchmark
+	public double suscepBootstrap(){
+		return workloads.suscepBootstrap();
+	}
+
+	@Benchmark
+	public double suscepJacknife(){
+		return workloads.suscepJacknife();
+	}
+}
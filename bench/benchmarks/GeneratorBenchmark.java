@@ -0,0 +1,62 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+//the cost of each LatticeRandom generator, alone and inside a glauber update, in ns per op. jdk is
+//java.util.Random, for comparison.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class GeneratorBenchmark {
+
+	@Param({"jdk", "splitmix", "xoshiro", "pcg"})
+	String generator;
+
+	@Param({"128"})
+	int n;
+
+	@Param({"2.27"})
+	double T;
+
+	private Workloads workloads;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		workloads = Workloads.create();
+		workloads.setUp(n, T, "byte");
+		workloads.useGenerator(generator);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		workloads.tearDown();
+	}
+
+	@Benchmark
+	public double nextDouble(){
+		return workloads.nextDouble();
+	}
+
+	@Benchmark
+	public void glauberDynamics(){
+		workloads.glauberDynamics();
+	}
+}
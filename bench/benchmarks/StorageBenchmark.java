@@ -0,0 +1,52 @@
+package benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+
+//glauber updates at T = 2.27 on each spin storage, in ns per update. the mapped file goes in the temp directory.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class StorageBenchmark {
+
+	@Param({"1024", "4096", "16384"})
+	int n;
+
+	@Param({"byte", "packed", "mapped"})
+	String storage;
+
+	private Workloads workloads;
+
+	@Setup(Level.Trial)
+	public void setUp() throws Exception {
+		workloads = Workloads.create();
+		workloads.setUp(n, 2.27, storage);
+	}
+
+	@TearDown(Level.Trial)
+	public void tearDown() throws Exception {
+		workloads.tearDown();
+	}
+
+	@Benchmark
+	public void glauberDynamics(){
+		workloads.glauberDynamics();
+	}
+}
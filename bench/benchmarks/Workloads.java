@@ -0,0 +1,52 @@
+package benchmarks;
+
+
+//the simulation classes all live in the default package, which JMH won't generate benchmarks in and which no other
+//package can import from. the benchmarks reach them through this interface instead, implemented in the default
+//package by LatticeWorkloads. every call site only ever sees that one class, so the JIT inlines straight through.
+public interface Workloads {
+
+	//an n x n random lattice at temperature T, its spins held in "byte", "packed" or "mapped" storage.
+	void setUp(int n, double T, String storage) throws Exception;
+
+	//a series of nSamples magnetisations of an n x n lattice at temperature T, for the error estimators.
+	void setUpSeries(int n, double T, int nSamples);
+
+	//an n x n random lattice at temperature T swept by CheckerboardGlauber on its own pool of the given threads.
+	void setUpCheckerboard(int n, double T, int threads);
+
+	//a ReplicaBatch of nReplicas random n x n replicas at temperature T.
+	void setUpBatch(int n, double T, int nReplicas);
+
+	//drives the lattice, and the random sites picked by localEnergy(), from the generator create() knows as kind.
+	void useGenerator(String kind);
+
+	void tearDown() throws Exception;
+
+	void glauberDynamics();
+	void kawasakiDynamics();
+	void localKawasakiDynamics();
+	//one multispin coded sweep. needs an even n.
+	void multispinSweep();
+	//one checkerboard sweep.
+	void checkerboardSweep();
+	//one sweep of every replica of the batch.
+	void batchSweep();
+	//one draw from the generator.
+	double nextDouble();
+	//local energy of a random site.
+	double localEnergy();
+	double systemEnergy();
+	double systemMagnetisation();
+
+	double suscepBootstrap();
+	double suscepJacknife();
+
+	static Workloads create(){
+		try{
+			return (Workloads)Class.forName("LatticeWorkloads").getDeclaredConstructor().newInstance();
+		}catch(ReflectiveOperationException e){
+			throw new IllegalStateException("LatticeWorkloads is missing from the benchmark classpath", e);
+		}
+	}
+}
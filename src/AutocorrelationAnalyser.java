@@ -0,0 +1,100 @@
+import java.util.Arrays;
+
+
+//sizes the equilibration and the sampling interval of a run from the measured autocorrelation of the energy and |M|,
+//instead of fixed thresholds.
+//equilibration: the lattice is run a sweep at a time, recording E and |M|. once the run is long enough its last two
+//quarters are compared; if their means agree within errors (allowing for autocorrelation) the system is taken to be
+//in equilibrium, otherwise the run length is doubled, up to maxSweeps. the run is also doubled while its second half
+//is shorter than 20*tau_int, since tau_int can't be trusted from a shorter series.
+//thinning: tau_int of E and |M| is measured over the second half of the run with Toolbox.integratedAutocorrelationTime
+//and samples are spaced by 2*tau_int sweeps, so they are roughly independent.
+public class AutocorrelationAnalyser {
+
+	private final int minSweeps;
+	private final int maxSweeps;
+	private final int maxThinning;
+
+	private boolean equilibrated;
+	private int sweepsUsed;
+	private double energyTau, magnetisationTau;
+
+	public AutocorrelationAnalyser(int minSweeps, int maxSweeps, int maxThinning){
+		this.minSweeps = Math.max(32, minSweeps);
+		this.maxSweeps = Math.max(this.minSweeps, maxSweeps);
+		this.maxThinning = Math.max(1, maxThinning);
+	}
+
+	//runs the lattice until it looks equilibrated, or for maxSweeps sweeps, and measures tau_int on the way.
+	//returns the number of sweeps run.
+	public int equilibrate(Lattice lattice, String dynamicsChoice){
+
+		int sweep = lattice.getN()*lattice.getN();
+		double[] energies = new double[maxSweeps];
+		double[] mags = new double[maxSweeps];
+		int t = 0;
+		int target = minSweeps;
+
+		while(true){
+
+			for(; t < target; t++){
+				lattice.dynamicsRepeated(sweep, dynamicsChoice);
+				energies[t] = lattice.getEnergy();
+				mags[t] = Math.abs(lattice.getMagnetisation());
+			}
+
+			energyTau = Toolbox.integratedAutocorrelationTime(Arrays.copyOfRange(energies, t/2, t));
+			magnetisationTau = Toolbox.integratedAutocorrelationTime(Arrays.copyOfRange(mags, t/2, t));
+			boolean longEnough = t/2 >= 20*Math.max(energyTau, magnetisationTau);
+
+			equilibrated = longEnough && !drifting(energies, t) && !drifting(mags, t);
+			if(equilibrated || target == maxSweeps) break;
+			target = Math.min(2*target, maxSweeps);
+		}
+
+		sweepsUsed = t;
+		return t;
+	}
+
+	//true if the means of the last two quarters of the first t entries differ by more than twice their error.
+	private static boolean drifting(double[] series, int t){
+
+		int quarter = t/4;
+		double[] secondHalf = Arrays.copyOfRange(series, t - 2*quarter, t);
+		double[] third = Arrays.copyOfRange(secondHalf, 0, quarter);
+		double[] fourth = Arrays.copyOfRange(secondHalf, quarter, 2*quarter);
+
+		double mean = Toolbox.avgArrayValue(secondHalf);
+		double variance = 0.0;
+		for(double x : secondHalf){
+			variance += (x - mean)*(x - mean);
+		}
+		variance /= secondHalf.length;
+		if(variance == 0.0) return false;
+
+		double tau = Toolbox.integratedAutocorrelationTime(secondHalf);
+		double meanError = Math.sqrt(variance*2*tau/quarter);
+		double difference = Math.abs(Toolbox.avgArrayValue(third) - Toolbox.avgArrayValue(fourth));
+
+		return difference > 2*Math.sqrt(2)*meanError;
+	}
+
+	public boolean isEquilibrated(){
+		return equilibrated;
+	}
+	public int getSweepsUsed(){
+		return sweepsUsed;
+	}
+	public double getEnergyTau(){
+		return energyTau;
+	}
+	public double getMagnetisationTau(){
+		return magnetisationTau;
+	}
+
+	//sweeps between samples, 2*tau_int of the slower observable, between 1 and maxThinning.
+	public int getThinningSweeps(){
+		int thinning = (int)Math.ceil(2*Math.max(energyTau, magnetisationTau));
+		return Math.max(1, Math.min(maxThinning, thinning));
+	}
+}
@@ -0,0 +1,271 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+
+//headless entry point for the temperature sweeps, for machines without a display. every combination of system size
+//and dynamics is run as a TemperatureSweep and written to <output>/<dynamics>_L<n>.txt as
+//"T, chi, chi error, C, C error, binder cumulant, equilibration sweeps, thinning sweeps" lines, with the raw
+//samples streamed to the matching .obs file (see ObservableWriter). progress goes to java.util.logging instead of
+//a LoadingFrame, and no awt or swing objects are ever made.
+//usage: java BatchRunner [config.properties] [key=value ...], where later settings override earlier ones, e.g.
+//java BatchRunner sizes=32,64,128 dynamics=g,w startT=1.5 finalT=4 temperatures=80 output=results
+//with campaign=true each dynamics is instead run as one ScalingCampaign over all the sizes, written to
+//<output>/<dynamics>_campaign/. the keys and their defaults are listed in defaults().
+//a sweep whose checkpoint is left over from a killed job carries on from it. campaigns aren't checkpointed.
+public class BatchRunner {
+
+	private static final Logger LOG = Logger.getLogger(BatchRunner.class.getName());
+
+	private static final String DYNAMICS_IDS = "gklcpwsm";
+
+	private final int[] sizes;
+	private final String[] dynamics;
+	private final double startT, finalT;
+	private final int nDatums;
+	private final int nSamples;
+	private final int equibSweeps, thinningSweeps;
+	private final boolean campaign;
+	private final int reequibSweeps, segmentLength;
+	private final boolean adaptive;
+	private final Boundary boundary;
+	private final Long seed;
+	private final String generator;
+	private final int nThreads;
+	private final Path output;
+	private final long checkpointMillis;
+
+	public BatchRunner(Properties config){
+
+		sizes = parseInts(config.getProperty("sizes"));
+		dynamics = config.getProperty("dynamics").split(",");
+		startT = Double.parseDouble(config.getProperty("startT").trim());
+		finalT = Double.parseDouble(config.getProperty("finalT").trim());
+		nDatums = Integer.parseInt(config.getProperty("temperatures").trim());
+		nSamples = Integer.parseInt(config.getProperty("samples").trim());
+		equibSweeps = Integer.parseInt(config.getProperty("equilibrationSweeps").trim());
+		thinningSweeps = Integer.parseInt(config.getProperty("thinningSweeps").trim());
+		campaign = Boolean.parseBoolean(config.getProperty("campaign").trim());
+		reequibSweeps = Integer.parseInt(config.getProperty("reequilibrationSweeps").trim());
+		segmentLength = Integer.parseInt(config.getProperty("segmentLength").trim());
+		adaptive = Boolean.parseBoolean(config.getProperty("adaptive").trim());
+		boundary = parseBoundary(config.getProperty("boundary"));
+		String seedValue = config.getProperty("seed", "").trim();
+		seed = seedValue.isEmpty() ? null : Long.valueOf(seedValue);
+		generator = config.getProperty("generator").trim();
+		nThreads = Integer.parseInt(config.getProperty("threads").trim());
+		output = Paths.get(config.getProperty("output").trim());
+		checkpointMillis = 1000L*Long.parseLong(config.getProperty("checkpointSeconds").trim());
+
+		for(int i = 0; i < dynamics.length; i++){
+			dynamics[i] = dynamics[i].trim();
+			if(dynamics[i].length() != 1 || DYNAMICS_IDS.indexOf(dynamics[i].charAt(0)) < 0){
+				throw new IllegalArgumentException("dynamics must be a list of g, k, l, c, p, w, s or m, not " + dynamics[i]);
+			}
+		}
+		for(int n : sizes){
+			if(n < 2) throw new IllegalArgumentException("system sizes must be at least 2, not " + n);
+		}
+		//creating the generator also rejects an unknown kind.
+		if(!LatticeRandom.create(generator, 0L).canSaveState() && checkpointMillis > 0){
+			throw new IllegalArgumentException("the " + generator + " generator can't be checkpointed, set checkpointSeconds=0");
+		}
+		if(nDatums < 1 || nSamples < 2 || equibSweeps < 1 || thinningSweeps < 1 || nThreads < 1 || reequibSweeps < 0
+				|| segmentLength < 1){
+			throw new IllegalArgumentException("temperatures, samples, sweeps and threads must be positive, with at least 2 samples");
+		}
+	}
+
+	public static Properties defaults(){
+
+		Properties config = new Properties();
+		config.setProperty("sizes", "50");
+		config.setProperty("dynamics", "g");
+		config.setProperty("startT", "1.5");
+		config.setProperty("finalT", "4");
+		config.setProperty("temperatures", "80");
+		config.setProperty("samples", "512");
+		//in sweeps of n*n updates, for sweeps and campaigns alike. with adaptive sampling they set the caps, at
+		//TemperatureSweep.ADAPTIVE_CAP times these.
+		config.setProperty("equilibrationSweeps", "100");
+		config.setProperty("thinningSweeps", "16");
+		config.setProperty("adaptive", "true");
+		//periodic, open or helical, see Boundary.
+		config.setProperty("boundary", "periodic");
+		//campaign runs only: sweeps of re-equilibration after each step up in temperature, and how many
+		//neighbouring temperatures share a lattice. see ScalingCampaign.
+		config.setProperty("campaign", "false");
+		config.setProperty("reequilibrationSweeps", "25");
+		config.setProperty("segmentLength", "4");
+		config.setProperty("seed", "");
+		//splitmix, xoshiro, pcg or jdk, see LatticeRandom. jdk can't be checkpointed.
+		config.setProperty("generator", "splitmix");
+		config.setProperty("threads", String.valueOf(Runtime.getRuntime().availableProcessors()));
+		config.setProperty("output", "results");
+		config.setProperty("checkpointSeconds", "60");
+		return config;
+	}
+
+	//the defaults, overridden by a properties file if the first argument isn't a key=value pair, then by the
+	//key=value arguments in order.
+	public static Properties parseArguments(String[] args) throws IOException{
+
+		Properties config = defaults();
+		int first = 0;
+
+		if(args.length > 0 && !args[0].contains("=")){
+			try(Reader in = Files.newBufferedReader(Paths.get(args[0]))){
+				config.load(in);
+			}
+			first = 1;
+		}
+
+		for(int i = first; i < args.length; i++){
+			int split = args[i].indexOf('=');
+			if(split < 1) throw new IllegalArgumentException("expected key=value, not " + args[i]);
+			String key = args[i].substring(0, split).trim();
+			if(!config.containsKey(key)) throw new IllegalArgumentException("unknown setting " + key);
+			config.setProperty(key, args[i].substring(split + 1));
+		}
+		return config;
+	}
+
+	public static void main(String[] args){
+
+		System.setProperty("java.awt.headless", "true");
+
+		try{
+			new BatchRunner(parseArguments(args)).runAll();
+		}catch(IOException | IllegalArgumentException e){
+			LOG.log(Level.SEVERE, "batch run failed", e);
+			System.exit(2);
+		}catch(IllegalStateException e){
+			LOG.log(Level.SEVERE, "batch run failed", e);
+			System.exit(1);
+		}
+	}
+
+	//runs every size with every dynamics in turn. each sweep already spreads its temperatures over the threads.
+	public void runAll() throws IOException{
+
+		Files.createDirectories(output);
+		LOG.info(sizes.length*dynamics.length + " sweeps of " + nDatums + " temperatures from " + startT + " to " + finalT
+				+ ", " + nSamples + " samples each, on " + nThreads + " threads, writing to " + output.toAbsolutePath());
+
+		if(campaign){
+			for(String dynamicsChoice : dynamics){
+				runCampaign(dynamicsChoice);
+			}
+			return;
+		}
+
+		for(int n : sizes){
+			for(String dynamicsChoice : dynamics){
+				run(n, dynamicsChoice);
+			}
+		}
+	}
+
+	public void runCampaign(String dynamicsChoice) throws IOException{
+
+		String name = dynamicsChoice + "_campaign";
+		int nPoints = sizes.length*nDatums;
+
+		ScalingCampaign campaign = new ScalingCampaign(sizes, dynamicsChoice, startT, finalT, nDatums);
+		campaign.setSweeps(equibSweeps, reequibSweeps, thinningSweeps);
+		campaign.setSegmentLength(segmentLength);
+		campaign.setNSamples(nSamples);
+		campaign.setNThreads(nThreads);
+		campaign.setAdaptiveSampling(adaptive);
+		campaign.setBoundary(boundary);
+		if(seed != null) campaign.setSeed(seed);
+		campaign.setGenerator(generator);
+
+		long start = System.nanoTime();
+		AtomicInteger finished = new AtomicInteger();
+		LOG.info(name + ": started");
+
+		campaign.run(i -> {
+			int count = finished.incrementAndGet();
+			if(count % Math.max(1, nPoints/100) != 0 && count != nPoints) return;
+			LOG.info(String.format("%s: %d/%d points done, %.1f s elapsed", name, count, nPoints, (System.nanoTime() - start)*1e-9));
+		});
+
+		campaign.writeResults(output.resolve(name));
+		int[] sorted = campaign.getSizes();
+		for(int s = 0; s < sorted.length - 1; s++){
+			LOG.info(String.format("%s: binder cumulants of L=%d and L=%d cross at T=%.4f (exact Tc %.4f)",
+					name, sorted[s], sorted[s + 1], campaign.binderCrossing(s), ScalingCampaign.ONSAGER_TC));
+		}
+		LOG.info(String.format("%s: finished in %.1f s", name, (System.nanoTime() - start)*1e-9));
+	}
+
+	public void run(int n, String dynamicsChoice) throws IOException{
+
+		String name = dynamicsChoice + "_L" + n;
+		long sweep = (long)n*n;
+
+		TemperatureSweep sweeper = new TemperatureSweep(n, dynamicsChoice, startT, finalT, nDatums);
+		sweeper.setThresholds(equibSweeps*sweep, thinningSweeps*sweep);
+		sweeper.setNSamples(nSamples);
+		sweeper.setNThreads(nThreads);
+		sweeper.setAdaptiveSampling(adaptive);
+		sweeper.setBoundary(boundary);
+		if(seed != null) sweeper.setSeed(seed);
+		sweeper.setGenerator(generator);
+		if(checkpointMillis > 0) sweeper.setCheckpoint(output.resolve(name + ".ckpt"), checkpointMillis);
+
+		long start = System.nanoTime();
+		AtomicInteger finished = new AtomicInteger();
+		LOG.info(name + ": started");
+
+		sweeper.setSeriesOutput(output.resolve(name + ".obs"));
+		sweeper.run(i -> {
+			int count = finished.incrementAndGet();
+			double seconds = (System.nanoTime() - start)*1e-9;
+			LOG.info(String.format("%s: %d/%d temperatures done, %.1f s elapsed, about %.0f s to go",
+					name, count, nDatums, seconds, seconds*(nDatums - count)/count));
+		});
+
+		writeResults(sweeper, output.resolve(name + ".txt"));
+		LOG.info(String.format("%s: finished in %.1f s", name, (System.nanoTime() - start)*1e-9));
+	}
+
+	private static void writeResults(TemperatureSweep sweeper, Path file) throws IOException{
+
+		double[] temperatures = sweeper.getTemperatures();
+		double[] chi = sweeper.getSusceptibilities(), chiErrors = sweeper.getSusceptibilityErrors();
+		double[] c = sweeper.getCapacities(), cErrors = sweeper.getCapacityErrors();
+		double[] binder = sweeper.getBinderCumulants();
+		int[] equib = sweeper.getEquilibrationSweeps(), thinning = sweeper.getThinningSweeps();
+
+		try(BufferedWriter bw = Files.newBufferedWriter(file)){
+			for(int d = 0; d < temperatures.length; d++){
+				bw.write(temperatures[d] + ", " + chi[d] + ", " + chiErrors[d] + ", " + c[d] + ", " + cErrors[d] + ", "
+						+ binder[d] + ", " + equib[d] + ", " + thinning[d]);
+				bw.newLine();
+			}
+		}
+	}
+
+	private static Boundary parseBoundary(String name){
+		for(Boundary boundary : Boundary.values()){
+			if(boundary.name().equalsIgnoreCase(name.trim())) return boundary;
+		}
+		throw new IllegalArgumentException("boundary must be periodic, open or helical, not " + name);
+	}
+
+	private static int[] parseInts(String list){
+		String[] parts = list.split(",");
+		int[] values = new int[parts.length];
+		for(int i = 0; i < parts.length; i++) values[i] = Integer.parseInt(parts[i].trim());
+		return values;
+	}
+}
@@ -0,0 +1,62 @@
+import java.util.stream.IntStream;
+
+
+//bootstrap errors for observables built from a variance, like the susceptibility and heat capacity.
+//a resample is never built: its indices are drawn one at a time and only the sums of x and x^2 are kept, so the
+//only allocation is one estimate per resample. resamples run in parallel, each on its own generator split from a
+//master, so the result for a given master state doesn't depend on the number of threads.
+public class Bootstrap {
+
+	public static final int DEFAULT_RESAMPLES = 256;
+
+	//bootstrap error of factor*(<x^2> - <x>^2): the spread of the estimate over nResamples resamples, the first of
+	//which is the original samples, as in the original suscepBootstrap.
+	public static double varianceError(double[] samples, double factor, int nResamples, LatticeRandom master){
+
+		int n = samples.length;
+		double shift = Toolbox.avgArrayValue(samples);
+		double[] estimates = new double[nResamples];
+
+		LatticeRandom[] rands = new LatticeRandom[nResamples];
+		for(int r = 1; r < nResamples; r++){
+			rands[r] = master.split();
+		}
+
+		estimates[0] = factor*shiftedVariance(samples, shift);
+
+		IntStream.range(1, nResamples).parallel().forEach(r -> {
+
+			LatticeRandom rand = rands[r];
+			double sum = 0.0, sumSq = 0.0;
+
+			for(int j = 0; j < n; j++){
+				double d = samples[rand.nextInt(n)] - shift;
+				sum += d;
+				sumSq += d*d;
+			}
+			double mean = sum/n;
+			estimates[r] = factor*(sumSq/n - mean*mean);
+		});
+
+		double estimateBar = Toolbox.avgArrayValue(estimates);
+		double runningTotal = 0.0;
+		for(int r = 0; r < nResamples; r++){
+			runningTotal += (estimates[r] - estimateBar)*(estimates[r] - estimateBar);
+		}
+		return Math.sqrt(runningTotal/nResamples);
+	}
+
+	private static double shiftedVariance(double[] samples, double shift){
+
+		int n = samples.length;
+		double sum = 0.0, sumSq = 0.0;
+
+		for(int i = 0; i < n; i++){
+			double d = samples[i] - shift;
+			sum += d;
+			sumSq += d*d;
+		}
+		double mean = sum/n;
+		return sumSq/n - mean*mean;
+	}
+}
@@ -0,0 +1,13 @@
+//boundary conditions of the lattice, see NeighbourTable.
+public enum Boundary {
+
+	//the lattice wraps round onto a torus in both directions.
+	PERIODIC,
+
+	//nothing wraps, the edge sites just have fewer neighbours.
+	OPEN,
+
+	//the sites form one chain, read row by row: the end of each row is bonded to the start of the next and the last
+	//site to the first. the rows above and below are the sites n along the chain either way, wrapping at the ends.
+	HELICAL
+}
@@ -0,0 +1,36 @@
+//spin storage holding one spin per byte in a flat, row-major array.
+public class ByteSpinStorage implements SpinStorage {
+
+	private final int n;
+	private final byte[] spins;
+
+	public ByteSpinStorage(int n){
+		this.n = n;
+		this.spins = new byte[n*n];
+	}
+
+	public int getN(){
+		return n;
+	}
+
+	public int get(int i, int j){
+		return spins[i*n + j];
+	}
+
+	public void set(int i, int j, int state){
+		spins[i*n + j] = (byte)state;
+	}
+
+	public void flip(int i, int j){
+		spins[i*n + j] = (byte)(-spins[i*n + j]);
+	}
+
+	public void copyRow(int i, byte[] row, int offset){
+		System.arraycopy(spins, i*n, row, offset, n);
+	}
+
+	//16 byte array header plus one byte per spin, rounded up to 8 bytes.
+	public long memoryFootprint(){
+		return (16 + (long)n*n + 7)/8*8;
+	}
+}
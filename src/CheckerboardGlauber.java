@@ -0,0 +1,128 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+//parallel glauber sweeps using the red/black checkerboard decomposition. no two sites of the same colour are
+//neighbours, so every site of one colour can be updated at the same time. the rows are split into blocks and each
+//block gets its own random stream, split from the master generator, for every half sweep.
+//needs an even system size so the colours still alternate across a periodic boundary. an open lattice can be
+//coloured at any size, a helical one never can, since its rows wrap round with a shift of one site.
+public class CheckerboardGlauber {
+
+	private final Lattice lattice;
+	private final ForkJoinPool pool;
+	private final LatticeRandom master;
+	private final int nBlocks;
+	private final LatticeRandom[] blockRands;
+	private final long[] blockBondDeltas;
+	private final long[] blockMagDeltas;
+	private final long[] blockAccepts;
+
+	public CheckerboardGlauber(Lattice lattice, ForkJoinPool pool, LatticeRandom master){
+		this.lattice = lattice;
+		this.pool = pool;
+		this.master = master;
+		this.nBlocks = Math.max(1, Math.min(lattice.getN(), 4*pool.getParallelism()));
+		this.blockRands = new LatticeRandom[nBlocks];
+		this.blockBondDeltas = new long[nBlocks];
+		this.blockMagDeltas = new long[nBlocks];
+		this.blockAccepts = new long[nBlocks];
+	}
+
+	public static boolean supports(Lattice lattice){
+		Boundary boundary = lattice.getBoundary();
+		return boundary == Boundary.OPEN || (boundary == Boundary.PERIODIC && lattice.getN() % 2 == 0);
+	}
+
+	//the block streams are split afresh from the master generator every half sweep, so its state is all the engine
+	//carries from one sweep to the next.
+	public long[] getState(){
+		return master.getState();
+	}
+	public void setState(long[] state){
+		master.setState(state);
+	}
+
+	//one sweep: every red site then every black site gets a single metropolis update.
+	public void sweep(){
+		halfSweep(0);
+		halfSweep(1);
+	}
+
+	public void sweeps(int nSweeps){
+		for(int s = 0; s < nSweeps; s++){
+			sweep();
+		}
+	}
+
+	private void halfSweep(int colour){
+
+		for(int b = 0; b < nBlocks; b++){
+			blockRands[b] = master.split();
+		}
+
+		pool.invoke(new BlockTask(colour, 0, nBlocks));
+
+		long dBond = 0, dMag = 0, accepted = 0;
+		for(int b = 0; b < nBlocks; b++){
+			dBond += blockBondDeltas[b];
+			dMag += blockMagDeltas[b];
+			accepted += blockAccepts[b];
+		}
+		lattice.addToTotals(dBond, dMag);
+		lattice.addMoves((long)lattice.getN()*lattice.getN()/2, accepted);
+	}
+
+	//updates every site of the given colour in the rows of block b.
+	private void updateBlock(int colour, int b){
+
+		int n = lattice.getN();
+		int rowStart = (int)((long)b*n/nBlocks);
+		int rowEnd = (int)((long)(b+1)*n/nBlocks);
+		SpinStorage spins = lattice.getSpins();
+		LatticeRandom rand = blockRands[b];
+		long dBond = 0, dMag = 0, accepted = 0;
+
+		for(int i = rowStart; i < rowEnd; i++){
+			for(int j = (colour + i) & 1; j < n; j += 2){
+
+				int s = spins.get(i, j);
+				int h = lattice.neighbourSum(i, j);
+				double p = lattice.acceptanceProbability(2*s*h);
+
+				if(p >= 1.0 || rand.nextDouble() <= p){
+					spins.flip(i, j);
+					dBond -= 2*s*h;
+					dMag -= 2*s;
+					accepted++;
+				}
+			}
+		}
+		blockBondDeltas[b] = dBond;
+		blockMagDeltas[b] = dMag;
+		blockAccepts[b] = accepted;
+	}
+
+	//splits the blocks of a half sweep across the pool.
+	private class BlockTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final int colour, from, to;
+
+		BlockTask(int colour, int from, int to){
+			this.colour = colour;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from == 1){
+				updateBlock(colour, from);
+			}else{
+				int mid = (from + to) >>> 1;
+				invokeAll(new BlockTask(colour, from, mid), new BlockTask(colour, mid, to));
+			}
+		}
+	}
+}
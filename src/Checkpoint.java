@@ -0,0 +1,329 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+//binary checkpoint of a TemperatureSweep: the run parameters, which temperatures are finished and their results,
+//and for every temperature still running its bit-packed spins, T, J, kB, samples so far and the random number state
+//of the lattice and of every engine it has started.
+//a checkpoint is written to a temporary file through a FileChannel, forced to disk and then moved over the old one,
+//so a kill part way through a write never leaves a broken checkpoint behind. it is read back through a memory map.
+//all numbers are big-endian. the header holds the format version, and a file of any version but VERSION is
+//rejected rather than half read.
+public class Checkpoint {
+
+	private static final long MAGIC = 0x49534E47434B5054L;
+	private static final int VERSION = 1;
+
+	long seed;
+	int systemSize;
+	String dynamicsChoice;
+	Boundary boundary;
+	String generator;
+	double startT, finalT;
+	long equibThreshold, postEquibThreshold;
+	boolean adaptiveSampling;
+	int nSamples;
+	boolean[] done;
+	double[] susceptibilities, suscepErrors, capacities, capacErrors, binderCumulants;
+	int[] equibSweeps, thinningSweeps;
+	List<ReplicaState> running = new ArrayList<ReplicaState>();
+
+
+	//one temperature caught part way through its sampling.
+	static class ReplicaState {
+		int datum;
+		int samplesDone;
+		long sampleInterval;
+		double[] magnetisms;
+		double[] energies;
+		LatticeState lattice;
+	}
+
+
+	//everything needed to carry a lattice on exactly where it left off. the spins are packed 64 to a long with every
+	//row starting on a fresh word, the same layout as PackedSpinStorage.
+	static class LatticeState {
+
+		int n;
+		double T, J, kB;
+		Boundary boundary;
+		boolean packed;
+		String randomKind;
+		long[] randomState;
+		Map<String, long[]> engineStates = new TreeMap<String, long[]>();
+		long[] words;
+
+		//copies the state of the lattice. must be called from the thread that is running it.
+		static LatticeState capture(Lattice lattice){
+
+			LatticeState state = new LatticeState();
+			SpinStorage spins = lattice.getSpins();
+
+			state.n = lattice.getN();
+			state.T = lattice.getT();
+			state.J = lattice.getJ();
+			state.kB = lattice.getkB();
+			state.boundary = lattice.getBoundary();
+			state.packed = spins instanceof PackedSpinStorage;
+			state.randomKind = lattice.getRandom().getKind();
+			state.randomState = lattice.getRandom().getState();
+			state.engineStates = lattice.getEngineStates();
+
+			if(state.packed){
+				state.words = ((PackedSpinStorage)spins).copyWords();
+			}else{
+				PackedSpinStorage packedSpins = new PackedSpinStorage(state.n);
+				for(int i = 0; i < state.n; i++){
+					for(int j = 0; j < state.n; j++){
+						if(spins.get(i, j) == 1) packedSpins.set(i, j, 1);
+					}
+				}
+				state.words = packedSpins.copyWords();
+			}
+			return state;
+		}
+
+		Lattice restore(){
+
+			PackedSpinStorage packedSpins = new PackedSpinStorage(n);
+			packedSpins.setWords(words);
+			SpinStorage spins = packedSpins;
+
+			if(!packed){
+				spins = new ByteSpinStorage(n);
+				for(int i = 0; i < n; i++){
+					for(int j = 0; j < n; j++){
+						spins.set(i, j, packedSpins.get(i, j));
+					}
+				}
+			}
+
+			Lattice lattice = new Lattice(spins, T);
+			lattice.setJ(J);
+			lattice.setkB(kB);
+			lattice.setBoundary(boundary);
+			LatticeRandom rand = LatticeRandom.create(randomKind, 0L);
+			rand.setState(randomState);
+			lattice.setRandom(rand);
+			lattice.setEngineStates(engineStates);
+			return lattice;
+		}
+	}
+
+
+	public static void write(Checkpoint checkpoint, Path file) throws IOException {
+
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try(FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)){
+
+			DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel), 1 << 16));
+			checkpoint.writeTo(out);
+			out.flush();
+			channel.force(true);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	public static Checkpoint read(Path file) throws IOException {
+
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)){
+
+			MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			if(in.getLong() != MAGIC) throw new IOException(file + " is not a checkpoint");
+			if(in.getInt() != VERSION) throw new IOException(file + " has an unknown checkpoint version");
+
+			Checkpoint checkpoint = new Checkpoint();
+			checkpoint.readFrom(in);
+			return checkpoint;
+		}
+	}
+
+	private void writeTo(DataOutputStream out) throws IOException {
+
+		int nDatums = done.length;
+
+		out.writeLong(MAGIC);
+		out.writeInt(VERSION);
+		out.writeLong(seed);
+		out.writeInt(systemSize);
+		writeString(out, dynamicsChoice);
+		writeString(out, boundary.name());
+		writeString(out, generator);
+		out.writeDouble(startT);
+		out.writeDouble(finalT);
+		out.writeLong(equibThreshold);
+		out.writeLong(postEquibThreshold);
+		out.writeBoolean(adaptiveSampling);
+		out.writeInt(nSamples);
+		out.writeInt(nDatums);
+
+		for(int d = 0; d < nDatums; d++){
+			out.writeBoolean(done[d]);
+		}
+		writeDoubles(out, susceptibilities, nDatums);
+		writeDoubles(out, suscepErrors, nDatums);
+		writeDoubles(out, capacities, nDatums);
+		writeDoubles(out, capacErrors, nDatums);
+		writeDoubles(out, binderCumulants, nDatums);
+		writeInts(out, equibSweeps, nDatums);
+		writeInts(out, thinningSweeps, nDatums);
+
+		out.writeInt(running.size());
+		for(ReplicaState replica : running){
+
+			out.writeInt(replica.datum);
+			out.writeInt(replica.samplesDone);
+			out.writeLong(replica.sampleInterval);
+			writeDoubles(out, replica.magnetisms, replica.samplesDone);
+			writeDoubles(out, replica.energies, replica.samplesDone);
+
+			LatticeState lattice = replica.lattice;
+			out.writeInt(lattice.n);
+			out.writeDouble(lattice.T);
+			out.writeDouble(lattice.J);
+			out.writeDouble(lattice.kB);
+			writeString(out, lattice.boundary.name());
+			out.writeBoolean(lattice.packed);
+			writeString(out, lattice.randomKind);
+			out.writeInt(lattice.randomState.length);
+			for(long s : lattice.randomState){
+				out.writeLong(s);
+			}
+			out.writeInt(lattice.engineStates.size());
+			for(Map.Entry<String, long[]> engine : lattice.engineStates.entrySet()){
+				writeString(out, engine.getKey());
+				out.writeInt(engine.getValue().length);
+				for(long s : engine.getValue()){
+					out.writeLong(s);
+				}
+			}
+			out.writeInt(lattice.words.length);
+			for(long w : lattice.words){
+				out.writeLong(w);
+			}
+		}
+	}
+
+	private void readFrom(MappedByteBuffer in){
+
+		seed = in.getLong();
+		systemSize = in.getInt();
+		dynamicsChoice = readString(in);
+		boundary = Boundary.valueOf(readString(in));
+		generator = readString(in);
+		startT = in.getDouble();
+		finalT = in.getDouble();
+		equibThreshold = in.getLong();
+		postEquibThreshold = in.getLong();
+		adaptiveSampling = in.get() != 0;
+		nSamples = in.getInt();
+		int nDatums = in.getInt();
+
+		done = new boolean[nDatums];
+		for(int d = 0; d < nDatums; d++){
+			done[d] = in.get() != 0;
+		}
+		susceptibilities = readDoubles(in, nDatums, nDatums);
+		suscepErrors = readDoubles(in, nDatums, nDatums);
+		capacities = readDoubles(in, nDatums, nDatums);
+		capacErrors = readDoubles(in, nDatums, nDatums);
+		binderCumulants = readDoubles(in, nDatums, nDatums);
+		equibSweeps = readInts(in, nDatums);
+		thinningSweeps = readInts(in, nDatums);
+
+		int nRunning = in.getInt();
+		for(int r = 0; r < nRunning; r++){
+
+			ReplicaState replica = new ReplicaState();
+			replica.datum = in.getInt();
+			replica.samplesDone = in.getInt();
+			replica.sampleInterval = in.getLong();
+			replica.magnetisms = readDoubles(in, replica.samplesDone, nSamples);
+			replica.energies = readDoubles(in, replica.samplesDone, nSamples);
+
+			LatticeState lattice = new LatticeState();
+			lattice.n = in.getInt();
+			lattice.T = in.getDouble();
+			lattice.J = in.getDouble();
+			lattice.kB = in.getDouble();
+			lattice.boundary = Boundary.valueOf(readString(in));
+			lattice.packed = in.get() != 0;
+			lattice.randomKind = readString(in);
+			lattice.randomState = new long[in.getInt()];
+			for(int s = 0; s < lattice.randomState.length; s++){
+				lattice.randomState[s] = in.getLong();
+			}
+			int nEngines = in.getInt();
+			for(int e = 0; e < nEngines; e++){
+				String name = readString(in);
+				long[] engineState = new long[in.getInt()];
+				for(int s = 0; s < engineState.length; s++){
+					engineState[s] = in.getLong();
+				}
+				lattice.engineStates.put(name, engineState);
+			}
+			lattice.words = new long[in.getInt()];
+			in.asLongBuffer().get(lattice.words);
+			in.position(in.position() + 8*lattice.words.length);
+
+			replica.lattice = lattice;
+			running.add(replica);
+		}
+	}
+
+	private static void writeString(DataOutputStream out, String s) throws IOException {
+		byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	private static String readString(MappedByteBuffer in){
+		byte[] bytes = new byte[in.getInt()];
+		in.get(bytes);
+		return new String(bytes, StandardCharsets.UTF_8);
+	}
+
+	private static void writeDoubles(DataOutputStream out, double[] values, int count) throws IOException {
+		for(int i = 0; i < count; i++){
+			out.writeDouble(values[i]);
+		}
+	}
+
+	//reads count doubles into a new array of the given length.
+	private static double[] readDoubles(MappedByteBuffer in, int count, int length){
+		double[] values = new double[length];
+		for(int i = 0; i < count; i++){
+			values[i] = in.getDouble();
+		}
+		return values;
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values, int count) throws IOException {
+		for(int i = 0; i < count; i++){
+			out.writeInt(values[i]);
+		}
+	}
+
+	private static int[] readInts(MappedByteBuffer in, int count){
+		int[] values = new int[count];
+		for(int i = 0; i < count; i++){
+			values[i] = in.getInt();
+		}
+		return values;
+	}
+}
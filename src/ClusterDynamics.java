@@ -0,0 +1,175 @@
+import java.util.Arrays;
+
+
+//cluster updates for the lattice: wolff single cluster flips and swendsen-wang sweeps. near the critical
+//temperature these decorrelate the system in far fewer sweeps than single spin glauber dynamics.
+//like spins on neighbouring sites are bonded with probability 1 - exp(-2J/kBT) and whole clusters are flipped.
+//every flip goes through Lattice.spinFlip so the running energy and magnetisation stay correct.
+//the bonds are read from the lattice's NeighbourTable, so the clusters follow its boundary conditions.
+public class ClusterDynamics {
+
+	private final Lattice lattice;
+	private final LatticeRandom rand;
+	private final int[] stack;
+	private final int[] parent;
+	private final byte[] clusterFlip;
+	private double meanClusterSize;
+	//bond probability meanClusterSize was measured at, NaN until the first wolff flips.
+	private double calibratedAt = Double.NaN;
+
+	public ClusterDynamics(Lattice lattice, LatticeRandom rand){
+		int nSites = lattice.getN()*lattice.getN();
+		this.lattice = lattice;
+		this.rand = rand;
+		this.stack = new int[nSites];
+		this.parent = new int[nSites];
+		this.clusterFlip = new byte[nSites];
+	}
+
+	//the wolff calibration, meanClusterSize and calibratedAt, followed by the generator state.
+	public long[] getState(){
+		long[] randomState = rand.getState();
+		long[] state = new long[2 + randomState.length];
+		state[0] = Double.doubleToRawLongBits(meanClusterSize);
+		state[1] = Double.doubleToRawLongBits(calibratedAt);
+		System.arraycopy(randomState, 0, state, 2, randomState.length);
+		return state;
+	}
+	public void setState(long[] state){
+		meanClusterSize = Double.longBitsToDouble(state[0]);
+		calibratedAt = Double.longBitsToDouble(state[1]);
+		rand.setState(Arrays.copyOfRange(state, 2, state.length));
+	}
+
+	//probability of adding a like neighbour to a cluster.
+	private double bondProbability(){
+		return 1.0 - Math.exp(-2.0*lattice.getJ()/(lattice.getkB()*lattice.getT()));
+	}
+
+	//grows a single wolff cluster from a random site and flips it. returns the number of spins flipped.
+	//sites are flipped as they join the cluster, so a flipped site can never be added twice.
+	public int wolffStep(){
+
+		int n = lattice.getN();
+		NeighbourTable table = lattice.getNeighbours();
+		double pAdd = bondProbability();
+		int seed = rand.nextInt(n*n);
+		int s = lattice.getPointState(seed/n, seed%n);
+		int top = 0;
+		int size = 0;
+
+		lattice.spinFlip(seed/n, seed%n);
+		stack[top++] = seed;
+
+		while(top > 0){
+
+			int site = stack[--top];
+			int i = site/n, j = site%n;
+			size++;
+
+			if(table.hasUp(i)) top = tryAdd(table.up(i), j, s, pAdd, top);
+			if(table.hasDown(i)) top = tryAdd(table.down(i), j, s, pAdd, top);
+			if(table.hasLeft(j)) top = tryAdd(table.leftRow(i, j), table.left(j), s, pAdd, top);
+			if(table.hasRight(j)) top = tryAdd(table.rightRow(i, j), table.right(j), s, pAdd, top);
+		}
+		return size;
+	}
+
+	private int tryAdd(int i, int j, int s, double pAdd, int top){
+
+		if(lattice.getPointState(i, j) == s && rand.nextDouble() < pAdd){
+			lattice.spinFlip(i, j);
+			stack[top++] = i*lattice.getN() + j;
+		}
+		return top;
+	}
+
+	//flips about the given number of spins in wolff clusters, so that the work done is comparable with the same
+	//number of single spin updates. returns the number of spins flipped.
+	//the number of clusters is fixed up front from the mean cluster size of the previous call: stopping once enough
+	//spins have flipped would make the stopping time depend on the clusters grown, and biases whatever is measured
+	//afterwards towards states with large clusters. there is no such mean on the first call, or after the
+	//temperature changes, so those calls calibrate instead, growing clusters until spinFlips spins have flipped.
+	//that bounds their work by spinFlips plus one cluster, and they only happen while equilibrating anyway.
+	public long wolffFlips(long spinFlips){
+
+		double pAdd = bondProbability();
+		long nClusters = 0;
+		long flipped = 0;
+
+		if(pAdd != calibratedAt){
+			do{
+				flipped += wolffStep();
+				nClusters++;
+			}while(flipped < spinFlips);
+			calibratedAt = pAdd;
+		}else{
+			nClusters = Math.max(1, Math.round(spinFlips/meanClusterSize));
+			for(long c = 0; c < nClusters; c++){
+				flipped += wolffStep();
+			}
+		}
+		meanClusterSize = flipped/(double)nClusters;
+		return flipped;
+	}
+
+	//one swendsen-wang sweep. the bonds are labelled into clusters with union-find and each cluster is
+	//flipped with probability 1/2.
+	public void swendsenWangSweep(){
+
+		int n = lattice.getN();
+		int nSites = n*n;
+		NeighbourTable table = lattice.getNeighbours();
+		double pAdd = bondProbability();
+
+		for(int k = 0; k < nSites; k++){
+			parent[k] = k;
+			clusterFlip[k] = -1;
+		}
+
+		for(int i = 0; i < n; i++){
+			for(int j = 0; j < n; j++){
+
+				int s = lattice.getPointState(i, j);
+				int down = table.down(i);
+				int rightRow = table.rightRow(i, j), right = table.right(j);
+
+				if(table.hasDown(i) && lattice.getPointState(down, j) == s && rand.nextDouble() < pAdd){
+					union(i*n + j, down*n + j);
+				}
+				if(table.hasRight(j) && lattice.getPointState(rightRow, right) == s && rand.nextDouble() < pAdd){
+					union(i*n + j, rightRow*n + right);
+				}
+			}
+		}
+
+		for(int k = 0; k < nSites; k++){
+
+			int root = find(k);
+			if(clusterFlip[root] == -1) clusterFlip[root] = (byte)(rand.nextBoolean() ? 1 : 0);
+			if(clusterFlip[root] == 1) lattice.spinFlip(k/n, k%n);
+		}
+	}
+
+	public void swendsenWangSweeps(int nSweeps){
+		for(int s = 0; s < nSweeps; s++){
+			swendsenWangSweep();
+		}
+	}
+
+	//union-find with path halving.
+	private int find(int k){
+		while(parent[k] != k){
+			parent[k] = parent[parent[k]];
+			k = parent[k];
+		}
+		return k;
+	}
+
+	private void union(int a, int b){
+		int rootA = find(a);
+		int rootB = find(b);
+		if(rootA != rootB) parent[rootA] = rootB;
+	}
+
+}
@@ -2,6 +2,12 @@
 public class IsingMain {
 	public static void main(String args[]){
 
+		//with arguments, run headless sweeps instead of opening the window. see BatchRunner for the settings.
+		if(args.length > 0){
+			BatchRunner.main(args);
+			return;
+		}
+
 		LatticeFrame lf = new LatticeFrame();
 		lf.setVisible(true);
 		
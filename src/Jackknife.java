@@ -0,0 +1,64 @@
+//streaming jackknife errors for observables built from a variance, like the susceptibility and heat capacity.
+//every leave-one-out estimate comes from sums of x and x^2 over the samples with the left out bin taken away, so
+//nothing is copied and the memory used doesn't grow with the number of samples.
+//samples are shifted by their mean first, which keeps <x^2> - <x>^2 from cancelling away its precision.
+public class Jackknife {
+
+	//jackknife error of factor*(<x^2> - <x>^2). the samples are cut into bins of binSize consecutive samples and
+	//each bin is left out in turn; bins bigger than the autocorrelation time make the error hold for correlated
+	//monte carlo samples. samples past the last whole bin are ignored, and there must be at least two whole bins.
+	//as in the original suscepJacknife the error is sqrt(sum of (estimate - mean estimate)^2), so a bin size of 1
+	//gives the same numbers as before.
+	public static double varianceError(double[] samples, double factor, int binSize){
+
+		if(binSize < 1 || binSize > samples.length/2){
+			throw new IllegalArgumentException("bin size must be between 1 and half the " + samples.length
+					+ " samples, not " + binSize);
+		}
+		int nBins = samples.length/binSize;
+		int used = nBins*binSize;
+		int kept = used - binSize;
+
+		double shift = 0.0;
+		for(int i = 0; i < used; i++){
+			shift += samples[i];
+		}
+		shift /= used;
+
+		double sum = 0.0, sumSq = 0.0;
+		for(int i = 0; i < used; i++){
+			double d = samples[i] - shift;
+			sum += d;
+			sumSq += d*d;
+		}
+
+		double estimateTotal = 0.0;
+		for(int b = 0; b < nBins; b++){
+			estimateTotal += leaveBinOut(samples, shift, sum, sumSq, b, binSize, kept, factor);
+		}
+		double estimateBar = estimateTotal/nBins;
+
+		double runningTotal = 0.0;
+		for(int b = 0; b < nBins; b++){
+			double errorB = leaveBinOut(samples, shift, sum, sumSq, b, binSize, kept, factor) - estimateBar;
+			runningTotal += errorB*errorB;
+		}
+		return Math.sqrt(runningTotal);
+	}
+
+	//factor times the variance of the shifted samples with bin b taken out of the totals.
+	private static double leaveBinOut(double[] samples, double shift, double sum, double sumSq, int b, int binSize,
+			int kept, double factor){
+
+		double binSum = 0.0, binSumSq = 0.0;
+		for(int i = b*binSize; i < (b+1)*binSize; i++){
+			double d = samples[i] - shift;
+			binSum += d;
+			binSumSq += d*d;
+		}
+
+		double mean = (sum - binSum)/kept;
+		double meanSq = (sumSq - binSumSq)/kept;
+		return factor*(meanSq - mean*mean);
+	}
+}
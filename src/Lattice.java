@@ -1,28 +1,133 @@
-import java.util.Random;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.swing.SwingUtilities;
 
 
 public class Lattice {
 
-	private LatticePoint[][] array;
+	private SpinStorage spins;
+	//neighbours of every site under the chosen boundary conditions, periodic unless set otherwise.
+	private NeighbourTable neighbours;
 	private double T;
 	private double J = 1.0, kB = 1.0;
-	private static Random rand = new Random();
+	private LatticeRandom rand = new LatticeRandom.SplitMix(LatticeRandom.newSeed());
+
+	//acceptance probabilities min(1, exp(-dE/kBT)) for every energy change dE = m*J with |m| <= MAX_DELTA_UNITS.
+	//on the square lattice dE is always a small integer multiple of J, so this replaces Math.exp in the dynamics.
+	//the table is rebuilt whenever T, J or kB change.
+	static final int MAX_DELTA_UNITS = 24;
+	private double[] acceptance = new double[2*MAX_DELTA_UNITS + 1];
+
+	//running totals kept up to date by every spin flip, so that measurements don't need a full rescan.
+	//bondSum is the sum of s_i*s_j over all nearest neighbour bonds, the energy is -J*bondSum.
+	private long bondSum;
+	private long magnetisation;
+
+	//debug mode: every verifyInterval spin flips the running totals are checked against a full rescan. 0 switches it off.
+	private long verifyInterval = 0;
+	private long flipsSinceVerify = 0;
+
+	//metropolis moves tried, and moves kept that changed the lattice, by the glauber and kawasaki dynamics, serial or
+	//parallel. a kawasaki swap of two equal spins is tried but changes nothing. cluster updates aren't counted.
+	private long movesAttempted = 0;
+	private long movesAccepted = 0;
+
+	//parallel checkerboard engine for the "c" dynamics, created the first time it is asked for.
+	private CheckerboardGlauber checkerboard;
+	//parallel band engine for the "p" kawasaki dynamics, created the first time it is asked for.
+	private ParallelKawasaki parallelKawasaki;
+	//multispin coded glauber engine for the "m" dynamics, created the first time it is asked for.
+	private MultispinGlauber multispin;
+	//wolff and swendsen-wang cluster updates for the "w" and "s" dynamics, created the first time they are asked for.
+	private ClusterDynamics cluster;
 
 	//Constructor for the lattice class.  The arguments are an array of LatticePoints and a double for the system temperature
+	//the points are copied into a flat byte storage, the array itself is not kept.
 	public Lattice(LatticePoint[][] array, double T){
-		this.array = array;
+		this(toStorage(array), T);
+	}
+
+	//Constructor taking an already filled spin storage, e.g. a PackedSpinStorage for very large systems.
+	public Lattice(SpinStorage spins, double T){
+		this.spins = spins;
+		this.neighbours = new NeighbourTable(spins.getN(), Boundary.PERIODIC);
 		this.T = T;
+		buildAcceptanceTable();
+		recomputeTotals();
+	}
+
+	//adapter from the old LatticePoint grid to the spin storage.
+	private static SpinStorage toStorage(LatticePoint[][] array){
+
+		int n = array.length;
+		SpinStorage storage = new ByteSpinStorage(n);
+
+		for(int i = 0; i < n; i++){
+			for(int j = 0; j < n; j++){
+				storage.set(i, j, array[i][j].getState());
+			}
+		}
+		return storage;
 	}
 
-	public LatticePoint[][] getArray(){
+	//a LatticePoint copy of the current spins, built afresh on every call: the lattice keeps its spins in a
+	//SpinStorage now, so unlike the old getArray changing the returned points does not change the lattice.
+	public LatticePoint[][] snapshotArray(){
+
+		int n = getN();
+		LatticePoint[][] array = new LatticePoint[n][n];
+
+		for(int i = 0; i < n; i++){
+			for(int j = 0; j < n; j++){
+				array[i][j] = new LatticePoint(getPointState(i, j));
+			}
+		}
 		return array;
 	}
+	//copies the spins row-major into snapshot as +1 or -1 bytes. snapshot must hold at least n*n.
+	public void copySpins(byte[] snapshot){
+		int n = getN();
+		for(int i = 0; i < n; i++){
+			spins.copyRow(i, snapshot, i*n);
+		}
+	}
+	//the parallel, multispin and cluster engines are sized for the old array, so they are started afresh.
 	public void setArray(LatticePoint[][] array){
-		this.array = array;
+		this.spins = toStorage(array);
+		if(neighbours.getN() != getN()) neighbours = new NeighbourTable(getN(), neighbours.getBoundary());
+		checkerboard = null;
+		parallelKawasaki = null;
+		multispin = null;
+		cluster = null;
+		recomputeTotals();
+	}
+
+	public SpinStorage getSpins(){
+		return spins;
+	}
+
+	public int getN(){
+		return spins.getN();
+	}
+
+	public Boundary getBoundary(){
+		return neighbours.getBoundary();
+	}
+	//switches the boundary conditions. the spins are kept and the running totals are rescanned, since the bonds
+	//across the edges change. the parallel and multispin engines only handle some boundaries, see their supports().
+	public void setBoundary(Boundary boundary){
+		this.neighbours = new NeighbourTable(getN(), boundary);
+		recomputeTotals();
+	}
+	public NeighbourTable getNeighbours(){
+		return neighbours;
 	}
 
 	public LatticePoint getLatticePoint(int i, int j){
-		return getArray()[i][j];
+		return new LatticePoint(getPointState(i, j));
 	}
 
 	public double getT(){
@@ -30,28 +135,104 @@ public class Lattice {
 	}
 	public void setT(double T){
 		this.T = T;
+		buildAcceptanceTable();
+	}
+
+	public double getJ(){
+		return J;
+	}
+	public void setJ(double J){
+		this.J = J;
+		buildAcceptanceTable();
+	}
+
+	public double getkB(){
+		return kB;
+	}
+	public void setkB(double kB){
+		this.kB = kB;
+		buildAcceptanceTable();
+	}
+
+	//reseeds this lattice's random numbers with a splitmix generator, so that a run can be repeated exactly.
+	public void setSeed(long seed){
+		setRandom(new LatticeRandom.SplitMix(seed));
+	}
+
+	//the generator is only ever used by one thread at a time. the parallel and cluster engines are split off it,
+	//so they are started afresh.
+	public void setRandom(LatticeRandom rand){
+		this.rand = rand;
+		checkerboard = null;
+		parallelKawasaki = null;
+		multispin = null;
+		cluster = null;
+	}
+	public LatticeRandom getRandom(){
+		return rand;
+	}
+
+	//the state of every parallel, multispin and cluster engine started so far, by name, for Checkpoint. the engines
+	//were split off the lattice's generator when they were first used, so a restored lattice can't just split them
+	//again: its generator has already moved on.
+	public Map<String, long[]> getEngineStates(){
+
+		Map<String, long[]> states = new TreeMap<String, long[]>();
+		if(checkerboard != null) states.put("checkerboard", checkerboard.getState());
+		if(parallelKawasaki != null) states.put("parallelKawasaki", parallelKawasaki.getState());
+		if(multispin != null) states.put("multispin", multispin.getState());
+		if(cluster != null) states.put("cluster", cluster.getState());
+		return states;
+	}
+
+	//starts the engines from getEngineStates() of a lattice whose generator was of the same kind as this one's.
+	//call after setRandom(), which drops them again.
+	public void setEngineStates(Map<String, long[]> states){
+
+		for(Map.Entry<String, long[]> entry : states.entrySet()){
+
+			LatticeRandom engineRand = LatticeRandom.create(rand.getKind(), 0L);
+			String name = entry.getKey();
+
+			if(name.equals("checkerboard")){
+				checkerboard = new CheckerboardGlauber(this, ForkJoinPool.commonPool(), engineRand);
+				checkerboard.setState(entry.getValue());
+			}else if(name.equals("parallelKawasaki")){
+				parallelKawasaki = new ParallelKawasaki(this, ForkJoinPool.commonPool(), engineRand);
+				parallelKawasaki.setState(entry.getValue());
+			}else if(name.equals("multispin")){
+				multispin = new MultispinGlauber(this, engineRand);
+				multispin.setState(entry.getValue());
+			}else if(name.equals("cluster")){
+				cluster = new ClusterDynamics(this, engineRand);
+				cluster.setState(entry.getValue());
+			}else{
+				throw new IllegalArgumentException("unknown engine " + name);
+			}
+		}
 	}
 
 	public int getPointState(int i, int j){
-		return getArray()[i][j].getState();
+		return spins.get(i, j);
 	}
+	//states are +1 or -1, setting a point to the other state is the same as flipping it.
 	public void setPointState(int i, int j, int state){
-		getArray()[i][j].setState(state);
+		if(getPointState(i, j) != state) spinFlip(i, j);
 	}
 
 	//simple void for printing the lattice to the terminal.
 	public void printLattice(){
-		for(int i = 0; i < array.length; i++){
+		for(int i = 0; i < getN(); i++){
 			System.out.println();
-			for(int j = 0; j < array.length; j++){
-				System.out.print("[" + array[i][j].getState() + "]");
+			for(int j = 0; j < getN(); j++){
+				System.out.print("[" + getPointState(i, j) + "]");
 			}
 		}
 	}
 
 	//simple void to graphically display the lattice at a given time.
 	public void displayLattice(){
-		LatticeFrame lf  = new LatticeFrame(new Lattice(getArray(), getT()));
+		LatticeFrame lf  = new LatticeFrame(new Lattice(snapshotArray(), getT()));
 		lf.setVisible(true);
 	}
 
@@ -59,62 +240,110 @@ public class Lattice {
 	//it works by calculating the sum of the product of the spins of a particle's south and east neighbours.
 	//these are then summed for every particle in the lattice.
 	public double systemEnergy(){
+		return -J*neighbours.bondSum(spins);
+	}
 
-		double E1 = 0, E2 = 0;
-		double runningTotal = 0;
-		int n = getArray().length - 1;
-
-		for(int i = 0; i <= n; i++){
-			for(int j = 0; j <= n; j++){
+	//method for calculating the local energy of a particle.
+	//it does this by calculating the product of its spin with the spins of its nearest neighbours.
+	public double localEnergy(int i, int j){
+		return -J*getPointState(i, j)*neighbourSum(i, j);
+	}
 
-				if(i == n) E1 = (getPointState(i, j)*getPointState(0, j));
-				else E1 = (getPointState(i, j)*getPointState(i+1, j));
+	//this method returns the system's magnetisation by summing over all the spins.
+	public double systemMagnetisation(){
 
-				if(j == n) E2 = (getPointState(i, j)*getPointState(i, 0));
-				else E2 = (getPointState(i, j)*getPointState(i, j+1));
+		int n = getN();
+		double runningTotal = 0.0;
 
-				runningTotal += E1 + E2;
+		for(int i = 0; i < n; i++){
+			for(int j = 0; j < n; j++){
+				runningTotal += getPointState(i, j);
 			}
 		}
+		return runningTotal;
+	}
 
-		double systemEnergy = -J*runningTotal;
-		return systemEnergy;	
+	//sum of the spins of the nearest neighbours of a particle, 4 of them except on the edges of an open lattice.
+	public int neighbourSum(int i, int j){
+		return neighbours.neighbourSum(spins, i, j);
 	}
 
-	//method for calculating the local energy of a particle.
-	//it does this by calculating the product of the spins of the particle's 4 nearest neighbours.
-	public double localEnergy(int i, int j){
+	//fills the acceptance table for the current T, J and kB. downhill moves are always accepted.
+	private void buildAcceptanceTable(){
 
-		int n = getArray().length - 1;
-		double E1 = 0, E2 = 0, E3 = 0, E4 = 0;
+		for(int m = -MAX_DELTA_UNITS; m <= MAX_DELTA_UNITS; m++){
 
-		if(i == 0) E1 = getPointState(i, j)*getPointState(n, j);
-		else E1 = getPointState(i, j)*getPointState(i-1, j);
+			double deltaE = m*J;
+			if(deltaE <= 0) acceptance[m + MAX_DELTA_UNITS] = 1.0;
+			else acceptance[m + MAX_DELTA_UNITS] = Math.min(1.0, boltzmannWeight(deltaE));
+		}
+	}
 
-		if(j == n) E2 = getPointState(i, j)*getPointState(i, 0);
-		else E2 = getPointState(i, j)*getPointState(i, j+1);
+	//acceptance probability for an energy change of deltaUnits*J, taken from the table.
+	public double acceptanceProbability(int deltaUnits){
+		return acceptance[deltaUnits + MAX_DELTA_UNITS];
+	}
 
-		if(i == n) E3 = getPointState(i, j)*getPointState(0, j);
-		else E3 = getPointState(i, j)*getPointState(i+1, j);
+	//table version of boltzmannSuccess for an energy change of deltaUnits*J.
+	private boolean acceptMove(int deltaUnits){
 
-		if(j == 0) E4 = getPointState(i, j)*getPointState(i, n);
-		else E4 = getPointState(i, j)*getPointState(i, j-1);
+		double p = acceptance[deltaUnits + MAX_DELTA_UNITS];
+		return p >= 1.0 || rand.nextDouble() <= p;
+	}
 
-		return -J*(E1 + E2 + E3 + E4);
+	//energy of the system from the running total, O(1). systemEnergy() gives the same value by a full scan.
+	public double getEnergy(){
+		return -J*bondSum;
 	}
 
-	//this method returns the system's magnetisation by summing over all the spins.
-	public double systemMagnetisation(){
+	//magnetisation of the system from the running total, O(1). systemMagnetisation() gives the same value by a full scan.
+	public double getMagnetisation(){
+		return magnetisation;
+	}
 
-		int n = getArray().length;
-		double runningTotal = 0.0;
+	//adds the totals changed by spins flipped directly in the storage, e.g. by a parallel sweep.
+	void addToTotals(long deltaBondSum, long deltaMagnetisation){
+		bondSum += deltaBondSum;
+		magnetisation += deltaMagnetisation;
+	}
 
-		for(int i = 0; i < n; i++){
-			for(int j = 0; j < n; j++){
-				runningTotal += getPointState(i, j);
-			}
+	//adds moves made directly in the storage, e.g. by a parallel sweep.
+	void addMoves(long attempted, long accepted){
+		movesAttempted += attempted;
+		movesAccepted += accepted;
+	}
+
+	public long getMovesAttempted(){
+		return movesAttempted;
+	}
+	public long getMovesAccepted(){
+		return movesAccepted;
+	}
+
+	//resets the running totals from a full scan of the lattice.
+	private void recomputeTotals(){
+
+		bondSum = neighbours.bondSum(spins);
+		magnetisation = (long)systemMagnetisation();
+	}
+
+	//switches on the debug check of the running totals against a full rescan every interval spin flips.
+	//an interval of 0 switches it off.
+	public void setVerifyInterval(long interval){
+		this.verifyInterval = interval;
+		this.flipsSinceVerify = 0;
+	}
+
+	//checks the running totals against a full rescan and throws if they have drifted.
+	public void verifyTotals(){
+
+		double scannedE = systemEnergy();
+		double scannedM = systemMagnetisation();
+
+		if(scannedE != getEnergy() || scannedM != getMagnetisation()){
+			throw new IllegalStateException("running totals out of step: E = " + getEnergy() + " (scan " + scannedE
+					+ "), M = " + getMagnetisation() + " (scan " + scannedM + ")");
 		}
-		return runningTotal;
 	}
 
 	//method for calculating the boltzmann weight of the system.
@@ -124,9 +353,14 @@ public class Lattice {
 
 	//a method for calculating if a random number is less than or equal to the boltzmann
 	//weight of the system.
+	//energy changes that are an integer multiple of J within the table are looked up, anything else falls back to exp.
 	public boolean boltzmannSuccess(double deltaE){
 
-		
+		double units = deltaE/J;
+		int m = (int)Math.rint(units);
+
+		if(units == m && m >= -MAX_DELTA_UNITS && m <= MAX_DELTA_UNITS) return acceptMove(m);
+
 		double prob = rand.nextDouble();
 
 		if(prob <= boltzmannWeight(deltaE)) return true;
@@ -136,63 +370,130 @@ public class Lattice {
 
 	//method for use in glauber dynamics, it picks a specific particle and inverts its spin.
 	public void spinFlip(int i, int j){
+		applyFlip(i, j, getPointState(i, j), neighbourSum(i, j));
+	}
+
+	//flips spin s at (i, j) whose neighbours sum to h, and updates the running totals.
+	private void applyFlip(int i, int j, int s, int h){
+
+		spins.flip(i, j);
+		bondSum -= 2*s*h;
+		magnetisation -= 2*s;
+		countFlips(1);
+	}
+
+	//exchanges the unlike spins at (i1, j1) and (i2, j2), a move that changes bondSum by -deltaUnits and leaves the
+	//magnetisation alone.
+	private void applySwap(int i1, int j1, int i2, int j2, int deltaUnits){
+
+		spins.flip(i1, j1);
+		spins.flip(i2, j2);
+		bondSum -= deltaUnits;
+		countFlips(2);
+	}
+
+	//runs the debug check of the running totals once verifyInterval spins have flipped since the last one.
+	private void countFlips(int flips){
 
-		if(getPointState(i, j) == 1) setPointState(i, j, -1);
-		else setPointState(i, j, 1);
+		if(verifyInterval > 0 && (flipsSinceVerify += flips) >= verifyInterval){
+			flipsSinceVerify = 0;
+			verifyTotals();
+		}
+	}
+
+	//energy change, in units of J, of exchanging spin s1 at (i1, j1) with the opposite spin at (i2, j2).
+	//that is flipping both: 2*s*h for each on its own, plus 4 for every bond joining the two sites, since the second
+	//flip sees its partner already flipped and the pair's product is -1. nearest neighbours share one bond, and only
+	//on a lattice 2 sites across can a pair share two.
+	private int swapDeltaUnits(int i1, int j1, int s1, int i2, int j2){
+		return 2*s1*(neighbourSum(i1, j1) - neighbourSum(i2, j2)) + 4*neighbours.bondsBetween(i1, j1, i2, j2);
 	}
 
 	//method for use in kawasaki dynamics, it picks two particles and swaps their spins.
+	//swapping two different spins is the same as flipping both, equal spins are left alone.
 	public void spinSwap(int i1, int j1, int i2, int j2){
-		int state1 = getPointState(i1, j1);
-		int state2 = getPointState(i2, j2);
 
-		setPointState(i1, j1, state2);
-		setPointState(i2, j2, state1);
+		if(getPointState(i1, j1) != getPointState(i2, j2)){
+			spinFlip(i1, j1);
+			spinFlip(i2, j2);
+		}
 	}
 
 	//method for glauber dynamics. it picks a point at random and flips its spin.
 	//if this is energetically favourable then it stays flipped, if not, then it only stays flipped
 	//according to the boltzmann probability of the energy change.
+	//flipping spin s changes the energy by 2*J*s*(sum of neighbours), which is looked up in the acceptance table.
 	public void glauberDynamics(){
 
-		int n = getArray().length;
+		int n = getN();
 		int iRand = rand.nextInt(n);
 		int jRand = rand.nextInt(n);
 
-		double origLE = localEnergy(iRand, jRand);
-
-		spinFlip(iRand, jRand);
-
-		double newLE = localEnergy(iRand, jRand);
-		double deltaE = newLE - origLE;
+		int s = getPointState(iRand, jRand);
+		int h = neighbourSum(iRand, jRand);
 
-		if(deltaE > 0 && !boltzmannSuccess(deltaE)) spinFlip(iRand, jRand);
+		movesAttempted++;
+		if(acceptMove(2*s*h)){
+			applyFlip(iRand, jRand, s, h);
+			movesAccepted++;
+		}
 	}
 
 	//method for kawasaki dynamics. it picks two points at random and swaps their spins.
 	//if this is energetically favourable then they stay swapped, if not, then they only stay swapped
 	//according to the boltzmann probability of the energy change.
+	//the energy change comes from the neighbour sums before anything is moved, see swapDeltaUnits. picking two equal
+	//spins, or the same site twice, is a move that changes nothing, so it is counted as tried and goes no further.
 	public void kawasakiDynamics(){
 
-		int n = getArray().length;
+		int n = getN();
 		int iRand1 = rand.nextInt(n);
 		int jRand1 = rand.nextInt(n);
 		int iRand2 = rand.nextInt(n);
 		int jRand2 = rand.nextInt(n);
 
-		double origLE = localEnergy(iRand1, jRand1) + localEnergy(iRand2, jRand2);
+		trySwap(iRand1, jRand1, iRand2, jRand2);
+	}
+
+	//local kawasaki dynamics: like kawasakiDynamics, but the second point is one of the nearest neighbours of the
+	//first, picked at random. the proposal is still symmetric, so it samples the same fixed magnetisation ensemble,
+	//and the magnetisation only moves around by diffusion as it would in a real conserved system.
+	//a neighbour missing at the edge of an open lattice is the point itself, so that move does nothing.
+	public void localKawasakiDynamics(){
+
+		int n = getN();
+		int iRand = rand.nextInt(n);
+		int jRand = rand.nextInt(n);
 
-		spinSwap(iRand1, jRand1, iRand2, jRand2);
+		switch(rand.nextInt(4)){
+		case 0: trySwap(iRand, jRand, neighbours.up(iRand), jRand); break;
+		case 1: trySwap(iRand, jRand, neighbours.down(iRand), jRand); break;
+		case 2: trySwap(iRand, jRand, neighbours.leftRow(iRand, jRand), neighbours.left(jRand)); break;
+		default: trySwap(iRand, jRand, neighbours.rightRow(iRand, jRand), neighbours.right(jRand)); break;
+		}
+	}
 
-		double newLE = localEnergy(iRand1, jRand1) + localEnergy(iRand2, jRand2);
-		double deltaE = newLE - origLE;
+	//one metropolis exchange of the spins at (i1, j1) and (i2, j2).
+	private void trySwap(int i1, int j1, int i2, int j2){
 
-		if(Math.abs(iRand1 - iRand2) == 1 && Math.abs(jRand1 - jRand2) == 1) deltaE += 4*J; //need to correct for periodic bc
+		movesAttempted++;
+		int s1 = getPointState(i1, j1);
+		if(s1 == getPointState(i2, j2)) return;
 
-		if(deltaE > 0 && !boltzmannSuccess(deltaE)) spinSwap(iRand1, jRand1, iRand2, jRand2);
+		int deltaUnits = swapDeltaUnits(i1, j1, s1, i2, j2);
+		if(acceptMove(deltaUnits)){
+			applySwap(i1, j1, i2, j2, deltaUnits);
+			movesAccepted++;
+		}
 	}
 
 	//void to perform either glauber or kawasaki dynamics to the lattice for a specified number of iterations
+	//"c" runs parallel checkerboard glauber sweeps and "p" parallel kawasaki sweeps, with the iterations rounded
+	//to a whole number of sweeps.
+	//"w" flips about iterations spins in wolff clusters, see ClusterDynamics.wolffFlips, "s" runs swendsen-wang
+	//sweeps.
+	//"m" runs multispin coded glauber sweeps, again rounded to whole sweeps.
+	//"l" runs local kawasaki dynamics, swapping nearest neighbours only.
 	public void dynamicsRepeated(int iterations, String methodID){
 
 		if(methodID.equals("g")){
@@ -203,25 +504,82 @@ public class Lattice {
 			for(int i = 0; i < iterations; i++){
 				kawasakiDynamics();
 			}
-		}else System.out.println("CODE ERROR, METHOD ID MUST BE g OR k");
+		}else if(methodID.equals("l")){
+			for(int i = 0; i < iterations; i++){
+				localKawasakiDynamics();
+			}
+		}else if(methodID.equals("c")){
+			checkerboardSweeps(Math.max(1, (int)Math.round(iterations/(double)(getN()*getN()))));
+		}else if(methodID.equals("p")){
+			parallelKawasakiSweeps(Math.max(1, (int)Math.round(iterations/(double)(getN()*getN()))));
+		}else if(methodID.equals("w")){
+			getCluster().wolffFlips(iterations);
+		}else if(methodID.equals("s")){
+			getCluster().swendsenWangSweeps(Math.max(1, (int)Math.round(iterations/(double)(getN()*getN()))));
+		}else if(methodID.equals("m")){
+			multispinSweeps(Math.max(1, (int)Math.round(iterations/(double)(getN()*getN()))));
+		}else System.out.println("CODE ERROR, METHOD ID MUST BE g, k, l, c, p, w, s OR m");
+	}
+
+	//runs whole checkerboard sweeps on the common fork join pool. lattices that can't be split into red and black
+	//sites, odd sized periodic or any helical ones, get the same number of serial glauber updates instead.
+	public void checkerboardSweeps(int nSweeps){
+
+		if(!CheckerboardGlauber.supports(this)){
+			dynamicsRepeated(nSweeps*getN()*getN(), "g");
+			return;
+		}
+		if(checkerboard == null) checkerboard = new CheckerboardGlauber(this, ForkJoinPool.commonPool(), rand.split());
+		checkerboard.sweeps(nSweeps);
+	}
+
+	//runs whole parallel kawasaki sweeps on the common fork join pool. systems too small to be cut into bands, or
+	//without periodic boundaries, get the same number of serial local kawasaki updates instead, which propose the
+	//same nearest neighbour swaps.
+	public void parallelKawasakiSweeps(int nSweeps){
+
+		if(!ParallelKawasaki.supports(this)){
+			dynamicsRepeated(nSweeps*getN()*getN(), "l");
+			return;
+		}
+		if(parallelKawasaki == null) parallelKawasaki = new ParallelKawasaki(this, ForkJoinPool.commonPool(), rand.split());
+		parallelKawasaki.sweeps(nSweeps);
+	}
+
+	//runs whole multispin coded glauber sweeps. odd sized or non-periodic systems get the same number of serial
+	//glauber updates instead.
+	public void multispinSweeps(int nSweeps){
+
+		if(!MultispinGlauber.supports(this)){
+			dynamicsRepeated(nSweeps*getN()*getN(), "g");
+			return;
+		}
+		if(multispin == null) multispin = new MultispinGlauber(this, rand.split());
+		multispin.sweeps(nSweeps);
+	}
+
+	private ClusterDynamics getCluster(){
+		if(cluster == null) cluster = new ClusterDynamics(this, rand.split());
+		return cluster;
+	}
+
+	//feeds the current energy and magnetisation, from the running totals, into an accumulator.
+	public void recordObservables(ObservableAccumulator acc){
+		acc.add(getEnergy(), getMagnetisation());
 	}
 
 	//method to calculate the susceptibility of the system. it takes in an array of system magnetisations
 	//then finds the their variance and multiplies this by 1/(N*T**2) where N is the no. of particles.
+	//the variance is found in one welford pass, which doesn't lose precision the way <M^2> - <M>^2 does.
 	public static double susceptibility(double[] magnetisms, double T, int systemSize){
 
-		double sysMag = 0.0;
-		double sysMagSq = 0.0;
-		int nMags = magnetisms.length;
+		ObservableAccumulator.Moments moments = new ObservableAccumulator.Moments();
 
-		for(int i = 0; i < nMags; i++){
-			sysMag += magnetisms[i];
-			sysMagSq += magnetisms[i]*magnetisms[i];
+		for(int i = 0; i < magnetisms.length; i++){
+			moments.add(magnetisms[i]);
 		}
 
-		double mAvgSq = (sysMag/nMags)*(sysMag/nMags);
-		double mSqAvg = sysMagSq/nMags;
-		double chi = (1/(systemSize*systemSize*T))*(mSqAvg - mAvgSq);	
+		double chi = (1/(systemSize*systemSize*T))*moments.getVariance();
 		return chi;
 	}
 
@@ -229,137 +587,69 @@ public class Lattice {
 	//method for finding the heat capacity of the system
 	public static double heatCapacity(double[] energies, double T){
 
-		double sysE = 0.0;
-		double sysESq = 0.0;
-		int nNrgs = energies.length;
+		ObservableAccumulator.Moments moments = new ObservableAccumulator.Moments();
 
-		for(int i = 0; i < nNrgs; i++){
-			sysE += energies[i];
-			sysESq += energies[i]*energies[i];
+		for(int i = 0; i < energies.length; i++){
+			moments.add(energies[i]);
 		}
 
-		double eSqAvg = sysESq/nNrgs;
-		double eAvgSq = (sysE/nNrgs)*(sysE/nNrgs);
-		double C = (1/(T*T))*(eSqAvg - eAvgSq);
+		double C = (1/(T*T))*moments.getVariance();
 		return C;
 
 	}
 
 
+	//bootstrap error of the susceptibility over the default 256 resamples.
 	public static double suscepBootstrap(double[] magnetisms, double T, int systemSize){
+		return suscepBootstrap(magnetisms, T, systemSize, Bootstrap.DEFAULT_RESAMPLES, new LatticeRandom.SplitMix(LatticeRandom.newSeed()));
+	}
 
-		int nSus = 256;
-		int nMags = magnetisms.length;
-		double[] bootedSusceps = new double[nSus];
-		double[] bootedSuscepsSq = new double[nSus];
-		double origSus = Lattice.susceptibility(magnetisms, T, systemSize);
-		bootedSusceps[0] = origSus;
-		bootedSuscepsSq[0] = origSus*origSus;
-		
-
-		for(int i = 1; i < nSus; i++){
-			double[] bootedMags = new double[nMags];
-
-			for(int j = 0; j < nMags; j++){
-
-				bootedMags[j] = magnetisms[rand.nextInt(nMags)];
-			}
-
-			double bootedSuscepI = Lattice.susceptibility(bootedMags, T, systemSize);
-			bootedSusceps[i] = bootedSuscepI;
-			bootedSuscepsSq[i] = bootedSuscepI*bootedSuscepI;
-
-		}
-
-		double chiSqBar = Toolbox.avgArrayValue(bootedSuscepsSq);
-		double chiBar = Toolbox.avgArrayValue(bootedSusceps);
-
-		return Math.sqrt(chiSqBar - chiBar*chiBar);
+	//bootstrap error of the susceptibility over nResamples resamples drawn from streams split off rand.
+	public static double suscepBootstrap(double[] magnetisms, double T, int systemSize, int nResamples, LatticeRandom rand){
+		return Bootstrap.varianceError(magnetisms, 1/(systemSize*systemSize*T), nResamples, rand);
 	}
 
 
+	//bootstrap error of the heat capacity over the default 256 resamples.
 	public static double capacBootstrap(double[] energies, double T){
+		return capacBootstrap(energies, T, Bootstrap.DEFAULT_RESAMPLES, new LatticeRandom.SplitMix(LatticeRandom.newSeed()));
+	}
 
-		int nCaps = 256;
-		int nEs = energies.length;
-		double[] bootedCaps = new double[nCaps];
-		double[] bootedCapsSq = new double[nCaps];
-		double origCap = Lattice.heatCapacity(energies, T);
-		bootedCaps[0] = origCap;
-		bootedCapsSq[0] = origCap*origCap;
-
-		for(int i = 1; i < nCaps; i++){
-			double[] bootedMags = new double[nEs];
-
-			for(int j = 0; j < nEs; j++){
-
-				bootedMags[j] = energies[rand.nextInt(nEs)];
-			}
-
-			double bootedSuscepI = Lattice.heatCapacity(energies, T);
-			bootedCaps[i] = bootedSuscepI;
-			bootedCapsSq[i] = bootedSuscepI*bootedSuscepI;
-
-		}
-
-		double cSqBar = Toolbox.avgArrayValue(bootedCapsSq);
-		double cBar = Toolbox.avgArrayValue(bootedCaps);
-
-		return Math.sqrt(cSqBar - cBar*cBar);
-
+	//bootstrap error of the heat capacity over nResamples resamples drawn from streams split off rand.
+	public static double capacBootstrap(double[] energies, double T, int nResamples, LatticeRandom rand){
+		return Bootstrap.varianceError(energies, 1/(T*T), nResamples, rand);
 	}
 
 
 
+	//jackknife error of the susceptibility, leaving out one sample at a time.
 	public static double suscepJacknife(double[] magnetisms, double T, int systemSize){
+		return suscepJacknife(magnetisms, T, systemSize, 1);
+	}
 
-		int n = magnetisms.length;
-		double[] jackedSusceptibilities = new double[n];
-
-		for(int i = 0; i < n; i++){
-
-			double[] lessMagnetisms = Toolbox.removeIthArrayElement(magnetisms, i);
-			double suscepI = Lattice.susceptibility(lessMagnetisms, T, systemSize);
-			jackedSusceptibilities[i] = suscepI;
-
-		}
-
-		double chiBar = Toolbox.avgArrayValue(jackedSusceptibilities);
-		double runningTotal = 0.0;
-
-		for(int i = 0; i < n; i++){
-
-			double errorI = (jackedSusceptibilities[i] - chiBar)*(jackedSusceptibilities[i] - chiBar);
-			runningTotal += errorI;
-		}
-
-		return Math.sqrt(runningTotal);
+	//blocked jackknife error of the susceptibility, leaving out binSize consecutive samples at a time.
+	public static double suscepJacknife(double[] magnetisms, double T, int systemSize, int binSize){
+		return Jackknife.varianceError(magnetisms, 1/(systemSize*systemSize*T), binSize);
 	}
 
 
+	//jackknife error of the heat capacity, leaving out one sample at a time.
 	public static double capacJacknife(double[] energies, double T){
+		return capacJacknife(energies, T, 1);
+	}
 
-		int n = energies.length;
-		double[] jackedCapacities = new double[n];
-
-		for(int i = 0; i < n; i++){
-
-			double[] lessEnergies = Toolbox.removeIthArrayElement(energies, i);
-			double capacI = Lattice.heatCapacity(lessEnergies, T);
-			jackedCapacities[i] = capacI;
-
-		}
-
-		double cBar = Toolbox.avgArrayValue(jackedCapacities);
-		double runningTotal = 0.0;
-
-		for(int i = 0; i < n; i++){
+	//blocked jackknife error of the heat capacity, leaving out binSize consecutive samples at a time.
+	public static double capacJacknife(double[] energies, double T, int binSize){
+		return Jackknife.varianceError(energies, 1/(T*T), binSize);
+	}
 
-			double errorI = (jackedCapacities[i] - cBar)*(jackedCapacities[i] - cBar);
-			runningTotal += errorI;
-		}
 
-		return Math.sqrt(runningTotal);
+	//runs a graph's temperature sweep, streaming every sample to filename.obs as it goes. a run that can't open
+	//the series file still goes ahead without it. the loading bar is a swing component, so its updates are handed
+	//to the event dispatch thread.
+	private static void runWithSeries(TemperatureSweep sweeper, String filename, LoadingFrame lf){
+		sweeper.setSeriesOutput(Paths.get(filename + ".obs"));
+		sweeper.run(i -> SwingUtilities.invokeLater(() -> lf.updateLoadingBar(i)));
 	}
 
 
@@ -376,38 +666,20 @@ public class Lattice {
 
 		double T = 1.5;
 		double finalT = 4;
-		double increment = (finalT-T)/(double)nDatums;
-		double[] susceptibilities = new double[nDatums];
-		double[] errors = new double[nDatums];
-		double[] temperatures = new double[nDatums];
 
-		Lattice lattice = new Lattice(LatticePoint.allPointsUp(systemSize), T);
+		TemperatureSweep sweeper = new TemperatureSweep(systemSize, dynamicsChoice, T, finalT, nDatums);
+		sweeper.setThresholds(equibThreshold, postEquibThreshold);
+		sweeper.setNSamples(nMagnetisms);
+		sweeper.setCheckpoint(Paths.get(filename + ".ckpt"), 60000);
+		sweeper.setAdaptiveSampling(true);
+
 		LoadingFrame lf = new LoadingFrame("Susceptibility Graph", nDatums);
 		lf.setVisible(true);
 
+		runWithSeries(sweeper, filename, lf);
 
-		for(int d = 0; d < nDatums; d++){
-
-			double[] magnetisms = new double[nMagnetisms];
-
-			lattice.dynamicsRepeated(equibThreshold, dynamicsChoice);
-
-			for(int i = 0; i < nMagnetisms; i++){
-				lattice.dynamicsRepeated(postEquibThreshold, dynamicsChoice);
-				double magnetism = lattice.systemMagnetisation();	
-				magnetisms[i] = magnetism;
-			}
-
-			susceptibilities[d] = Lattice.susceptibility(magnetisms, T, systemSize);
-			errors[d] = Lattice.suscepBootstrap(magnetisms, T, systemSize);
-			temperatures[d] = T;
-			T+=increment;
-			lattice.setT(T);
-			lf.updateLoadingBar(d);
-		}
-
-		Toolbox.createGraph(temperatures, susceptibilities, "Susceptibility", "T", "Chi");
-		Toolbox.writeResultsToFile(temperatures, susceptibilities, errors, filename);
+		Toolbox.createGraph(sweeper.getTemperatures(), sweeper.getSusceptibilities(), "Susceptibility", "T", "Chi");
+		Toolbox.writeResultsToFile(sweeper.getTemperatures(), sweeper.getSusceptibilities(), sweeper.getSusceptibilityErrors(), filename);
 
 	}
 
@@ -426,44 +698,21 @@ public class Lattice {
 
 		double T = 1.5;
 		double finalT = 4;
-		double increment = (finalT-T)/(double)nDatums;
-		double[] capacities = new double[nDatums];
-		double[] errors = new double[nDatums];
-		double[] temperatures = new double[nDatums];
-
-		Lattice lattice = new Lattice(LatticePoint.allPointsUp(systemSize), T);
-		if(dynamicsChoice.equals("k")){
-			lattice = new Lattice(LatticePoint.randLatticeArray(systemSize), T);
-			lattice.dynamicsRepeated(equibThreshold, dynamicsChoice);
-			graphTitle = "Heat Capacity (kawasaki) vs T";
-		}
+
+		TemperatureSweep sweeper = new TemperatureSweep(systemSize, dynamicsChoice, T, finalT, nDatums);
+		sweeper.setThresholds(equibThreshold, postEquibThreshold);
+		sweeper.setNSamples(nEnergies);
+		sweeper.setCheckpoint(Paths.get(filename + ".ckpt"), 60000);
+		sweeper.setAdaptiveSampling(true);
+		if(dynamicsChoice.equals("k")) graphTitle = "Heat Capacity (kawasaki) vs T";
 
 		LoadingFrame lf = new LoadingFrame("Heat Capacity Graph", nDatums);
 		lf.setVisible(true);
 
+		runWithSeries(sweeper, filename, lf);
 
-		for(int d = 0; d < nDatums; d++){
-
-			double[] energies = new double[nEnergies];
-
-			lattice.dynamicsRepeated(equibThreshold, dynamicsChoice);
-
-			for(int i = 0; i < nEnergies; i++){
-				lattice.dynamicsRepeated(postEquibThreshold, dynamicsChoice);
-				double energy = lattice.systemEnergy();
-				energies[i] = energy;
-			}
-
-			capacities[d] = Lattice.heatCapacity(energies, T);
-			errors[d] = Lattice.capacBootstrap(energies, T);
-			temperatures[d] = T;
-			T+=increment;
-			lattice.setT(T);
-			lf.updateLoadingBar(d);
-		}
-
-		Toolbox.createGraph(temperatures, capacities, graphTitle, "T", "C");
-		Toolbox.writeResultsToFile(temperatures, capacities, errors, filename);
+		Toolbox.createGraph(sweeper.getTemperatures(), sweeper.getCapacities(), graphTitle, "T", "C");
+		Toolbox.writeResultsToFile(sweeper.getTemperatures(), sweeper.getCapacities(), sweeper.getCapacityErrors(), filename);
 	}
 
 
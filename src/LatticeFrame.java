@@ -2,11 +2,18 @@ import java.awt.BorderLayout;
 import java.awt.Color;
 import java.awt.Dimension;
 import java.awt.Graphics;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import javax.swing.JButton;
+import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
 import javax.swing.JPanel;
@@ -14,86 +21,311 @@ import javax.swing.JTextField;
 import javax.swing.Timer;
 
 
+//draws the lattice and runs its dynamics. the simulation lives on its own thread and every change to the lattice
+//is queued to it as a command, so the event dispatch thread never touches the spins. at most once a frame the
+//simulation thread copies the spins into a snapshot and hands it over; paintComponent colours it into an int backed
+//image and scales that onto the panel with a single drawImage. a new snapshot is only taken once the last one has
+//been picked up, so a slow screen drops frames instead of holding up the simulation.
+//how many of the lattice's moves the viewer runs per frame. it keeps a running estimate of the update throughput
+//and asks for enough moves to reach the target sweeps per second, but never more than fit in a frame. a target of
+//0 runs as many moves as fit in a frame.
+//moves owed are carried over between frames, so dynamics that only run whole sweeps at a time just skip frames
+//until a sweep is due rather than overshooting the target.
+class StepScheduler {
+
+	private final long frameNanos;
+	private double targetSweepsPerSecond;
+	private double movesPerNano = 0;
+	private double owed = 0;
+
+	public StepScheduler(long frameNanos, double targetSweepsPerSecond){
+		this.frameNanos = frameNanos;
+		this.targetSweepsPerSecond = targetSweepsPerSecond;
+	}
+
+	public void setTargetSweepsPerSecond(double target){
+		this.targetSweepsPerSecond = target;
+	}
+
+	//forgets the measured throughput, e.g. after the lattice or the dynamics have changed.
+	public void reset(){
+		movesPerNano = 0;
+		owed = 0;
+	}
+
+	//moves to run next frame on an n x n lattice, possibly none. the first frame runs a small trial batch to
+	//measure the throughput.
+	public int movesPerFrame(int n){
+
+		double budget = movesPerNano > 0 ? movesPerNano*frameNanos : 1000;
+		double wanted = targetSweepsPerSecond > 0 ? targetSweepsPerSecond*n*n*frameNanos*1e-9 : budget;
+		owed = Math.min(owed + wanted, budget);
+		return (int)Math.max(0, Math.min(owed, Integer.MAX_VALUE));
+	}
+
+	//records that moves moves took nanos, smoothing the throughput over the last few frames.
+	public void record(long moves, long nanos){
+
+		owed -= moves;
+		if(nanos <= 0) return;
+		double rate = moves/(double)nanos;
+		movesPerNano = movesPerNano == 0 ? rate : 0.8*movesPerNano + 0.2*rate;
+	}
+}
+
+
+
 class LatticePanel extends JPanel{
+
+	private static final long FRAME_NANOS = 1000000000L/60;
+	private static final long STATS_NANOS = 500000000L;
+	private static final double DEFAULT_SWEEPS_PER_SECOND = 60;
+	private static final int UP_COLOUR = Color.RED.getRGB();
+	private static final int DOWN_COLOUR = Color.BLUE.getRGB();
+	private static final int TILE = 64;
+
+	//spins copied row-major from a lattice of size n, with the figures shown under the lattice.
+	private static class Snapshot {
+		int n;
+		byte[] spins;
+		double sweepsPerSecond, acceptanceRate, energy, magnetisation;
+
+		String status(){
+			String acceptance = Double.isNaN(acceptanceRate) ? "-" : String.format("%.3f", acceptanceRate);
+			return String.format("%.1f sweeps/s   acceptance %s   E/N %.4f   M/N %.4f",
+					sweepsPerSecond, acceptance, energy, magnetisation);
+		}
+	}
+
+	//only used by the simulation thread once it has started.
 	Lattice array;
-	int arraySize;
-	int iteration = 0;
+	private String dynamicsChoice;
+	private boolean changed = true;
+	private long lastPublished;
+	private final StepScheduler scheduler = new StepScheduler(FRAME_NANOS, DEFAULT_SWEEPS_PER_SECOND);
+
+	//moves run and lattice counters at the start of the current stats window, and the figures from the last one.
+	private Lattice measuredLattice;
+	private String measuredDynamics;
+	private long windowStart, windowMoves, windowAttempted, windowAccepted;
+	private double sweepsPerSecond, acceptanceRate = Double.NaN;
+
+	private final BlockingQueue<Runnable> commands = new LinkedBlockingQueue<Runnable>();
+	private final AtomicReference<Snapshot> ready = new AtomicReference<Snapshot>();
+	private final AtomicReference<Snapshot> spare = new AtomicReference<Snapshot>();
+	//only used on the event dispatch thread.
+	private BufferedImage image;
+	private JLabel statusLabel;
 
 	public LatticePanel(Lattice array){
 		this.array = array;
-		this.arraySize = array.getArray().length;
 		setBackground(Color.BLACK);
+
+		Thread simulation = new Thread(this::simulate, "lattice simulation");
+		simulation.setDaemon(true);
+		simulation.start();
 	}
 
 	@Override
 	public void paintComponent(Graphics g){
 		super.paintComponent(g);
 
-		int w = getWidth()/getN(array);
-		int h = getHeight()/getN(array);
+		Snapshot latest = ready.getAndSet(null);
+		if(latest != null){
+			draw(latest);
+			if(statusLabel != null) statusLabel.setText(latest.status());
+			spare.set(latest);
+		}
+		if(image != null) g.drawImage(image, 0, 0, getWidth(), getHeight(), null);
+	}
+
+	//colours a snapshot into the image, one pixel per spin. spin (i, j) goes to pixel (i, j), so the image is the
+	//transpose of the row-major spins; it's filled in square tiles to keep both the reads and the writes in cache.
+	private void draw(Snapshot snapshot){
+
+		int n = snapshot.n;
+		byte[] spins = snapshot.spins;
+		if(image == null || image.getWidth() != n) image = new BufferedImage(n, n, BufferedImage.TYPE_INT_RGB);
+		int[] pixels = ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+
+		for(int i0 = 0; i0 < n; i0 += TILE){
+			for(int j0 = 0; j0 < n; j0 += TILE){
+				int iEnd = Math.min(i0 + TILE, n), jEnd = Math.min(j0 + TILE, n);
+				for(int i = i0; i < iEnd; i++){
+					for(int j = j0; j < jEnd; j++){
+						pixels[j*n + i] = spins[i*n + j] == 1 ? UP_COLOUR : DOWN_COLOUR;
+					}
+				}
+			}
+		}
+	}
+
+	//runs queued commands, then a frame's worth of moves if the dynamics are on, and publishes a frame when one is
+	//due. a frame that finishes early waits out the rest of it, so a low target isn't overshot.
+	//with the dynamics off it sleeps until the next command, or until the last change has been shown.
+	private void simulate(){
+
+		try{
+			while(true){
+
+				Runnable command;
+				if(dynamicsChoice != null) command = commands.poll();
+				else if(changed) command = commands.poll(FRAME_NANOS, TimeUnit.NANOSECONDS);
+				else command = commands.take();
+
+				while(command != null){
+					command.run();
+					changed = true;
+					command = commands.poll();
+				}
+
+				long frameStart = System.nanoTime();
+				if(array != measuredLattice || !Objects.equals(dynamicsChoice, measuredDynamics)) restartMeasurement(frameStart);
 
-		for(int i = 0; i < getN(array); i++){
-			for(int j = 0; j < getN(array); j++){
+				if(dynamicsChoice != null){
+					runFrame();
+					changed = true;
+				}
 
-				if(getArray().getArray()[i][j].getState() == 1){
-					g.setColor(Color.RED);
-					g.fillRect(w*i, h*j, w, h);
+				long now = System.nanoTime();
+				if(changed && now - lastPublished >= FRAME_NANOS && ready.get() == null){
+					publish(now);
+					lastPublished = now;
+					changed = false;
+				}
 
-				}else if (getArray().getArray()[i][j].getState() == -1){
-					g.setColor(Color.BLUE);
-					g.fillRect(w*i, h*j, w, h);
-				}else{
-					g.setColor(Color.WHITE);
-					g.fillRect(w*i, h*j, w, h);
+				long rest = frameStart + FRAME_NANOS - System.nanoTime();
+				if(dynamicsChoice != null && rest > 0){
+					command = commands.poll(rest, TimeUnit.NANOSECONDS);
+					if(command != null){
+						command.run();
+						changed = true;
+					}
 				}
 			}
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
 		}
 	}
 
+	//runs the moves the scheduler asks for and tells it how long they took. the lattice counts the moves of the
+	//metropolis dynamics itself; the cluster dynamics are taken to have run what was asked.
+	private void runFrame(){
 
-	public void glauberAnimate(){
-		for(int i = 0; i < 1000; i++){
-		array.glauberDynamics();
-		}
-		repaint();
+		int moves = scheduler.movesPerFrame(array.getN());
+		if(moves == 0) return;
+		long attempted = array.getMovesAttempted();
+		long start = System.nanoTime();
+
+		array.dynamicsRepeated(moves, dynamicsChoice);
+
+		long done = array.getMovesAttempted() - attempted;
+		if(done == 0) done = moves;
+		scheduler.record(done, System.nanoTime() - start);
+		windowMoves += done;
 	}
 
-	public void kawasakiAnimate(){
-		for(int i = 0; i < 1000; i++){
-		array.kawasakiDynamics();
-		}
+	private void restartMeasurement(long now){
+		measuredLattice = array;
+		measuredDynamics = dynamicsChoice;
+		scheduler.reset();
+		windowStart = now;
+		windowMoves = 0;
+		windowAttempted = array.getMovesAttempted();
+		windowAccepted = array.getMovesAccepted();
+		sweepsPerSecond = 0;
+		acceptanceRate = Double.NaN;
+	}
+
+	//sweeps per second and acceptance rate over the last STATS_NANOS, so the figures don't jitter every frame.
+	private void updateStats(long now){
+
+		if(now - windowStart < STATS_NANOS) return;
+
+		int n = array.getN();
+		long attempted = array.getMovesAttempted() - windowAttempted;
+		long accepted = array.getMovesAccepted() - windowAccepted;
+		sweepsPerSecond = windowMoves/((double)n*n)/((now - windowStart)*1e-9);
+		acceptanceRate = attempted > 0 ? accepted/(double)attempted : Double.NaN;
+
+		windowStart = now;
+		windowMoves = 0;
+		windowAttempted = array.getMovesAttempted();
+		windowAccepted = array.getMovesAccepted();
+	}
+
+	//copies the spins into a free snapshot and passes it to the event dispatch thread.
+	private void publish(long now){
+
+		int n = array.getN();
+		Snapshot snapshot = spare.getAndSet(null);
+		if(snapshot == null) snapshot = new Snapshot();
+		if(snapshot.spins == null || snapshot.spins.length < n*n) snapshot.spins = new byte[n*n];
+		snapshot.n = n;
+		array.copySpins(snapshot.spins);
+
+		updateStats(now);
+		snapshot.sweepsPerSecond = sweepsPerSecond;
+		snapshot.acceptanceRate = acceptanceRate;
+		snapshot.energy = array.getEnergy()/(n*n);
+		snapshot.magnetisation = array.getMagnetisation()/(n*n);
+
+		ready.set(snapshot);
 		repaint();
 	}
 
+	private void queue(Runnable command){
+		commands.add(command);
+	}
+
+	//shows the sweeps per second, acceptance rate, energy and magnetisation of every frame drawn.
+	public void setStatusLabel(JLabel statusLabel){
+		this.statusLabel = statusLabel;
+	}
+
+	//sweeps per second to aim for while the dynamics run, or 0 for as many as fit in each frame.
+	public void setTargetSweepsPerSecond(double target){
+		queue(() -> scheduler.setTargetSweepsPerSecond(target));
+	}
+
+	//starts the given dynamics, switching from any others, or stops them if they are already running.
+	public void toggleDynamics(String choice){
+		queue(() -> dynamicsChoice = choice.equals(dynamicsChoice) ? null : choice);
+	}
+
+	public void startDynamics(String choice){
+		queue(() -> dynamicsChoice = choice);
+	}
+
+	public void stopDynamics(){
+		queue(() -> dynamicsChoice = null);
+	}
+
 	public void resetRandom(){
-		LatticePoint[][] arrayPoints = LatticePoint.randLatticeArray(array.getArray().length);
-		array = new Lattice(arrayPoints, array.getT());
-		repaint();
+		queue(() -> replaceLattice(LatticePoint.randLatticeArray(array.getN())));
 	}
 
 	public void resetAligned(){
-		LatticePoint[][] arrayPoints = LatticePoint.allPointsUp(array.getArray().length);
-		array = new Lattice(arrayPoints, array.getT());
-		repaint();
+		queue(() -> replaceLattice(LatticePoint.allPointsUp(array.getN())));
 	}
 
 	public void changeSize(int n){
-		LatticePoint[][] arrayPoints = LatticePoint.randLatticeArray(n);
-		array = new Lattice(arrayPoints, array.getT());
-		repaint();
+		queue(() -> replaceLattice(LatticePoint.randLatticeArray(n)));
 	}
 
-	public void changeTemperature(double T){
-		array.setT(T);
-		repaint();
+	public void changeBoundary(Boundary boundary){
+		queue(() -> array.setBoundary(boundary));
 	}
 
-	public Lattice getArray(){
-		return array;
+	//swaps in a new lattice at the same temperature and boundary. only called on the simulation thread.
+	private void replaceLattice(LatticePoint[][] points){
+		Lattice lattice = new Lattice(points, array.getT());
+		lattice.setBoundary(array.getBoundary());
+		array = lattice;
 	}
 
-	public int getN(Lattice array){
-		return array.getArray().length;
+	public void changeTemperature(double T){
+		queue(() -> array.setT(T));
 	}
 }
 
@@ -106,11 +338,15 @@ public class LatticeFrame extends JFrame{
 
 	LatticePanel lPan;
 	Lattice array;
-	Timer glauberTimer, kawasakiTimer;
 	JLabel tempLabel = new JLabel("Temperature: ");
 	JTextField tempField = new JTextField(String.valueOf(T), 10);
 	JLabel sizeLabel = new JLabel("Size of system: ");
 	JTextField sizeField = new JTextField(String.valueOf(dimension), 10);
+	JLabel speedLabel = new JLabel("Sweeps/sec (0 = max): ");
+	JTextField speedField = new JTextField("60", 6);
+	JLabel boundaryLabel = new JLabel("Boundary: ");
+	JComboBox<Boundary> boundaryBox = new JComboBox<Boundary>(Boundary.values());
+	JLabel statusLabel = new JLabel(" ");
 
 	JButton glauberButton = new JButton("Glauber");
 	JButton kawasakiButton = new JButton("Kawasaki");
@@ -138,9 +374,18 @@ public class LatticeFrame extends JFrame{
 		inputPanel.add(tempField);
 		inputPanel.add(sizeLabel);
 		inputPanel.add(sizeField);
+		inputPanel.add(speedLabel);
+		inputPanel.add(speedField);
+		inputPanel.add(boundaryLabel);
+		inputPanel.add(boundaryBox);
+
+		JPanel southPanel = new JPanel(new BorderLayout());
+		southPanel.add(buttonPanel, BorderLayout.CENTER);
+		southPanel.add(statusLabel, BorderLayout.SOUTH);
+		lPan.setStatusLabel(statusLabel);
 
 		getContentPane().add(lPan, BorderLayout.CENTER);
-		getContentPane().add(buttonPanel, BorderLayout.SOUTH);
+		getContentPane().add(southPanel, BorderLayout.SOUTH);
 		getContentPane().add(inputPanel, BorderLayout.NORTH);
 		pack();
 
@@ -162,6 +407,8 @@ public class LatticeFrame extends JFrame{
 		highThenLow();
 		changeTemperature();
 		changeSize();
+		changeSpeed();
+		changeBoundary();
 	}
 
 
@@ -189,46 +436,22 @@ public class LatticeFrame extends JFrame{
 
 
 	public void glauberAnimate(){
-
-		glauberTimer = new Timer(0, (e)->{
-			lPan.glauberAnimate();
-		});
-
 		glauberButton.addActionListener((e)->{
-
-			if(kawasakiTimer.isRunning()) kawasakiTimer.stop();
-
-			if(!glauberTimer.isRunning()){
-				glauberTimer.start();
-			} else {
-				glauberTimer.stop();
-			}
+			lPan.toggleDynamics("g");
 		});
 	}
 
 
 	public void kawasakiAnimate(){
-
-		kawasakiTimer = new Timer(0, (e)->{
-			lPan.kawasakiAnimate();
-		});
-
 		kawasakiButton.addActionListener((e)->{
-			if(glauberTimer.isRunning()) glauberTimer.stop();
-
-			if(!kawasakiTimer.isRunning()){
-				kawasakiTimer.start();
-			} else {
-				kawasakiTimer.stop();
-			}
+			lPan.toggleDynamics("k");
 		});
 	}
 
 
 	public void resetRandomly(){
 		resetRandButton.addActionListener((e)->{
-			glauberTimer.stop();
-			kawasakiTimer.stop();
+			lPan.stopDynamics();
 			lPan.resetRandom();
 		});
 	}
@@ -236,28 +459,24 @@ public class LatticeFrame extends JFrame{
 
 	public void resetAligned(){
 		resetAlignedButton.addActionListener((e)->{
-			glauberTimer.stop();
-			kawasakiTimer.stop();
+			lPan.stopDynamics();
 			lPan.resetAligned();
 		});
 	}
 	
 	
+	//melts the lattice at a very high temperature, then quenches it to 0.7 after 400 seconds.
 	public void highThenLow(){
 		
-		glauberTimer = new Timer(0, (e)->{
-			lPan.glauberAnimate();
+		Timer quench = new Timer(400000, (e)->{
+			lPan.changeTemperature(0.7);
 		});
+		quench.setRepeats(false);
 		
 		highThenLowButton.addActionListener((e)->{
 			lPan.changeTemperature(300);
-			glauberTimer.start();
-			
-			try{
-				wait(400000);
-			}catch (Exception ex){}
-			
-			lPan.changeTemperature(0.7);		
+			lPan.startDynamics("g");
+			quench.restart();
 		});
 	}
 
@@ -270,6 +489,13 @@ public class LatticeFrame extends JFrame{
 
 	}
 
+	public void changeSpeed(){
+		speedField.addActionListener((e)->{
+			double target = Double.parseDouble(speedField.getText());
+			lPan.setTargetSweepsPerSecond(target);
+		});
+	}
+
 	public void changeSize(){
 		sizeField.addActionListener((e)->{
 			int n = Integer.parseInt(sizeField.getText());
@@ -277,5 +503,11 @@ public class LatticeFrame extends JFrame{
 		});
 	}
 
+	public void changeBoundary(){
+		boundaryBox.addActionListener((e)->{
+			lPan.changeBoundary((Boundary)boundaryBox.getSelectedItem());
+		});
+	}
+
 
 }
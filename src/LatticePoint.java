@@ -18,9 +18,17 @@ public class LatticePoint {
 
 
 	public static LatticePoint[][] randLatticeArray(int n){
+		return randLatticeArray(n, new Random());
+	}
+
+	//random lattice drawn from a given seed, so that a run can be repeated.
+	public static LatticePoint[][] randLatticeArray(int n, long seed){
+		return randLatticeArray(n, new Random(seed));
+	}
+
+	private static LatticePoint[][] randLatticeArray(int n, Random rand){
 
 		LatticePoint[][] latticeArray = new LatticePoint[n][n];
-		Random rand = new Random();
 
 		for(int i = 0; i < n; i++){
 			for(int j = 0; j < n; j++){
@@ -48,6 +56,16 @@ public class LatticePoint {
 		return latticeArray;
 	}
 
+	//approximate heap used by an n x n grid of LatticePoints: the outer array, n row arrays of references
+	//and one 16 byte object per point (assuming compressed references).
+	public static long memoryFootprint(int n){
+
+		long outer = (16 + 4L*n + 7)/8*8;
+		long rows = n*((16 + 4L*n + 7)/8*8);
+		long points = 16L*n*n;
+		return outer + rows + points;
+	}
+
 	public static LatticePoint[][] copiedLatticePoints(LatticePoint[][] points){
 
 		int n = points.length;
@@ -0,0 +1,295 @@
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicLong;
+
+
+//random numbers for the lattice dynamics. unlike java.util.Random none of these generators are synchronised, so each
+//one must only be used by one thread at a time. split() hands out an independent generator for another thread or
+//replica, so a whole run can be driven from one master seed.
+//the state can be read and restored, so a run can be checkpointed and carried on with the same random numbers.
+public abstract class LatticeRandom {
+
+	private static final AtomicLong seedUniquifier = new AtomicLong(0x2545F4914F6CDD1DL);
+
+	public abstract long nextLong();
+
+	//an independent generator. for a given parent state the child is always the same.
+	public abstract LatticeRandom split();
+
+	public abstract long[] getState();
+	public abstract void setState(long[] state);
+
+	//false if getState() and setState() aren't supported, so a run using this generator can't be checkpointed.
+	public boolean canSaveState(){
+		return true;
+	}
+
+	//the name create() knows this generator by.
+	public abstract String getKind();
+
+	//uniform int in [0, bound), by lemire's multiply and reject method.
+	public int nextInt(int bound){
+
+		long m = (nextLong() >>> 32)*bound;
+		long low = m & 0xFFFFFFFFL;
+
+		if(low < bound){
+			long threshold = (0x100000000L - bound) % bound;
+			while(low < threshold){
+				m = (nextLong() >>> 32)*bound;
+				low = m & 0xFFFFFFFFL;
+			}
+		}
+		return (int)(m >>> 32);
+	}
+
+	//uniform double in [0, 1) from the top 53 bits.
+	public double nextDouble(){
+		return (nextLong() >>> 11)*0x1.0p-53;
+	}
+
+	public boolean nextBoolean(){
+		return nextLong() < 0;
+	}
+
+	//generator by name: "splitmix", "xoshiro", "pcg" or "jdk" (java.util.Random, for comparison only).
+	public static LatticeRandom create(String kind, long seed){
+
+		if(kind.equals("splitmix")) return new SplitMix(seed);
+		if(kind.equals("xoshiro")) return new Xoshiro(seed);
+		if(kind.equals("pcg")) return new Pcg(seed);
+		if(kind.equals("jdk")) return new Jdk(seed);
+		throw new IllegalArgumentException("unknown generator " + kind + ", must be splitmix, xoshiro, pcg or jdk");
+	}
+
+	//a fresh seed that differs between calls, even from different threads at the same time.
+	public static long newSeed(){
+		return mix64(seedUniquifier.addAndGet(0x9E3779B97F4A7C15L) ^ System.nanoTime());
+	}
+
+	static long mix64(long z){
+		z = (z ^ (z >>> 30))*0xBF58476D1CE4E5B9L;
+		z = (z ^ (z >>> 27))*0x94D049BB133111EBL;
+		return z ^ (z >>> 31);
+	}
+
+
+	//splitmix64, the algorithm behind java.util.SplittableRandom, with a per-generator gamma.
+	public static final class SplitMix extends LatticeRandom {
+
+		private long seed;
+		private long gamma;
+
+		public SplitMix(long seed){
+			this(seed, 0x9E3779B97F4A7C15L);
+		}
+
+		private SplitMix(long seed, long gamma){
+			this.seed = seed;
+			this.gamma = gamma;
+		}
+
+		public long nextLong(){
+			seed += gamma;
+			return mix64(seed);
+		}
+
+		public LatticeRandom split(){
+			long childSeed = nextLong();
+			seed += gamma;
+			return new SplitMix(childSeed, mixGamma(seed));
+		}
+
+		//odd gammas with enough bit transitions, as in SplittableRandom.
+		private static long mixGamma(long z){
+			z = (z ^ (z >>> 33))*0xFF51AFD7ED558CCDL;
+			z = (z ^ (z >>> 33))*0xC4CEB9FE1A85EC53L;
+			z = (z ^ (z >>> 33)) | 1L;
+			int n = Long.bitCount(z ^ (z >>> 1));
+			return (n < 24) ? z ^ 0xAAAAAAAAAAAAAAAAL : z;
+		}
+
+		public String getKind(){
+			return "splitmix";
+		}
+
+		public long[] getState(){
+			return new long[]{seed, gamma};
+		}
+		public void setState(long[] state){
+			seed = state[0];
+			gamma = state[1];
+		}
+	}
+
+
+	//xoshiro256** by blackman and vigna. split() hands the current stream to the child and jumps this generator
+	//2^128 steps ahead, so parent and child never overlap.
+	public static final class Xoshiro extends LatticeRandom {
+
+		private static final long[] JUMP = {0x180EC6D33CFD0ABAL, 0xD5A61266F0C9392CL, 0xA9582618E03FC9AAL, 0x39ABDC4529B1661CL};
+		private long s0, s1, s2, s3;
+
+		public Xoshiro(long seed){
+			SplitMix init = new SplitMix(seed);
+			s0 = init.nextLong();
+			s1 = init.nextLong();
+			s2 = init.nextLong();
+			s3 = init.nextLong();
+		}
+
+		private Xoshiro(long s0, long s1, long s2, long s3){
+			this.s0 = s0;
+			this.s1 = s1;
+			this.s2 = s2;
+			this.s3 = s3;
+		}
+
+		public long nextLong(){
+
+			long result = Long.rotateLeft(s1*5, 7)*9;
+			long t = s1 << 17;
+
+			s2 ^= s0;
+			s3 ^= s1;
+			s1 ^= s2;
+			s0 ^= s3;
+			s2 ^= t;
+			s3 = Long.rotateLeft(s3, 45);
+
+			return result;
+		}
+
+		public LatticeRandom split(){
+			Xoshiro child = new Xoshiro(s0, s1, s2, s3);
+			jump();
+			return child;
+		}
+
+		private void jump(){
+
+			long t0 = 0, t1 = 0, t2 = 0, t3 = 0;
+
+			for(long word : JUMP){
+				for(int b = 0; b < 64; b++){
+					if((word & (1L << b)) != 0){
+						t0 ^= s0;
+						t1 ^= s1;
+						t2 ^= s2;
+						t3 ^= s3;
+					}
+					nextLong();
+				}
+			}
+			s0 = t0;
+			s1 = t1;
+			s2 = t2;
+			s3 = t3;
+		}
+
+		public String getKind(){
+			return "xoshiro";
+		}
+
+		public long[] getState(){
+			return new long[]{s0, s1, s2, s3};
+		}
+		public void setState(long[] state){
+			s0 = state[0];
+			s1 = state[1];
+			s2 = state[2];
+			s3 = state[3];
+		}
+	}
+
+
+	//pcg32 (xsh-rr output on a 64 bit lcg) by o'neill. two outputs make a long. split() gives the child a new
+	//state and its own lcg increment, so it runs on a different stream.
+	public static final class Pcg extends LatticeRandom {
+
+		private static final long MULTIPLIER = 6364136223846793005L;
+		private long state;
+		private long increment;
+
+		public Pcg(long seed){
+			this(mix64(seed), 0xDA3E39CB94B95BDBL);
+		}
+
+		private Pcg(long seed, long stream){
+			this.increment = stream | 1L;
+			this.state = 0;
+			next32();
+			this.state += seed;
+			next32();
+		}
+
+		private int next32(){
+			long old = state;
+			state = old*MULTIPLIER + increment;
+			int xorShifted = (int)(((old >>> 18) ^ old) >>> 27);
+			int rot = (int)(old >>> 59);
+			return Integer.rotateRight(xorShifted, rot);
+		}
+
+		public long nextLong(){
+			return ((long)next32() << 32) | (next32() & 0xFFFFFFFFL);
+		}
+
+		public LatticeRandom split(){
+			return new Pcg(nextLong(), nextLong());
+		}
+
+		public String getKind(){
+			return "pcg";
+		}
+
+		public long[] getState(){
+			return new long[]{state, increment};
+		}
+		public void setState(long[] state){
+			this.state = state[0];
+			this.increment = state[1];
+		}
+	}
+
+
+	//java.util.Random behind the same interface, only so the old shared generator can be benchmarked against the others.
+	//its state can't be read back, so it can't be checkpointed.
+	public static final class Jdk extends LatticeRandom {
+
+		private final Random rand;
+
+		public Jdk(long seed){
+			this.rand = new Random(seed);
+		}
+
+		public long nextLong(){
+			return rand.nextLong();
+		}
+
+		public int nextInt(int bound){
+			return rand.nextInt(bound);
+		}
+
+		public double nextDouble(){
+			return rand.nextDouble();
+		}
+
+		public LatticeRandom split(){
+			return new Jdk(rand.nextLong());
+		}
+
+		public String getKind(){
+			return "jdk";
+		}
+
+		public boolean canSaveState(){
+			return false;
+		}
+		public long[] getState(){
+			throw new UnsupportedOperationException("java.util.Random state can't be saved");
+		}
+		public void setState(long[] state){
+			throw new UnsupportedOperationException("java.util.Random state can't be restored");
+		}
+	}
+}
@@ -0,0 +1,125 @@
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+
+//off-heap spin storage in a memory-mapped file, for lattices bigger than the heap. the spins are bit-packed like
+//PackedSpinStorage, 64 to a long with each row starting on a fresh word, and the rows are grouped into tiles of
+//consecutive rows, each tile mapped separately (a single mapping can't pass 2GB). the OS pages the tiles in and out
+//as the dynamics moves over the lattice. the file starts out all zeros, i.e. all spins down.
+//close unmaps the tiles. the file itself is left behind for the caller to keep or delete.
+public class MappedSpinStorage implements SpinStorage, Closeable {
+
+	private static final long MAX_TILE_BYTES = 1L << 30;
+
+	private final int n;
+	private final int wordsPerRow;
+	private final int tileShift;
+	private final int tileMask;
+	private final MappedByteBuffer[] maps;
+	private final LongBuffer[] tiles;
+
+	public MappedSpinStorage(int n, Path file) throws IOException {
+		this(n, file, MAX_TILE_BYTES);
+	}
+
+	//tiles of at most maxTileBytes, rounded down to a power of two number of rows but never less than one row.
+	MappedSpinStorage(int n, Path file, long maxTileBytes) throws IOException {
+
+		this.n = n;
+		this.wordsPerRow = (n + 63) >>> 6;
+
+		long rowBytes = 8L*wordsPerRow;
+		int rowsPerTile = Integer.highestOneBit((int)Math.max(1, Math.min(n, maxTileBytes/rowBytes)));
+		this.tileShift = Integer.numberOfTrailingZeros(rowsPerTile);
+		this.tileMask = rowsPerTile - 1;
+
+		int nTiles = (n + rowsPerTile - 1) >>> tileShift;
+		this.maps = new MappedByteBuffer[nTiles];
+		this.tiles = new LongBuffer[nTiles];
+
+		try(FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+
+			for(int t = 0; t < nTiles; t++){
+				int rows = Math.min(rowsPerTile, n - t*rowsPerTile);
+				maps[t] = channel.map(FileChannel.MapMode.READ_WRITE, t*rowsPerTile*rowBytes, rows*rowBytes);
+				maps[t].order(ByteOrder.nativeOrder());
+				tiles[t] = maps[t].asLongBuffer();
+			}
+		}
+	}
+
+	public int getN(){
+		return n;
+	}
+
+	public int get(int i, int j){
+		int bit = (int)(tiles[i >>> tileShift].get((i & tileMask)*wordsPerRow + (j >>> 6)) >>> j) & 1;
+		return 2*bit - 1;
+	}
+
+	public void set(int i, int j, int state){
+
+		LongBuffer tile = tiles[i >>> tileShift];
+		int w = (i & tileMask)*wordsPerRow + (j >>> 6);
+		long mask = 1L << j;
+
+		if(state == 1) tile.put(w, tile.get(w) | mask);
+		else tile.put(w, tile.get(w) & ~mask);
+	}
+
+	public void flip(int i, int j){
+
+		LongBuffer tile = tiles[i >>> tileShift];
+		int w = (i & tileMask)*wordsPerRow + (j >>> 6);
+		tile.put(w, tile.get(w) ^ (1L << j));
+	}
+
+	//writes every changed page back to the file.
+	public void force(){
+		for(MappedByteBuffer map : maps){
+			map.force();
+		}
+	}
+
+	//the spins live off the heap, only the tile handles are on it.
+	public long memoryFootprint(){
+		return 16 + 64L*maps.length;
+	}
+
+	//bytes of the backing file.
+	public long mappedBytes(){
+		return 8L*wordsPerRow*n;
+	}
+
+	//unmaps every tile now rather than whenever the collector gets round to it, which on some systems is what
+	//lets the file be deleted. the storage can't be used afterwards.
+	public void close(){
+		for(int t = 0; t < maps.length; t++){
+			if(maps[t] != null) unmap(maps[t]);
+			maps[t] = null;
+			tiles[t] = null;
+		}
+	}
+
+	//java has no public way to unmap a buffer, so this goes through Unsafe.invokeCleaner on the jvms that have it,
+	//9 and later. anywhere else the mapping is left to the collector.
+	private static void unmap(MappedByteBuffer map){
+		try{
+			Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+			Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+			theUnsafe.setAccessible(true);
+			unsafeClass.getMethod("invokeCleaner", ByteBuffer.class).invoke(theUnsafe.get(null), map);
+		}catch(ReflectiveOperationException | RuntimeException e){
+			//left to the collector.
+		}
+	}
+}
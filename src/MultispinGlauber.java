@@ -0,0 +1,192 @@
+import java.util.Arrays;
+
+
+//glauber sweeps with multispin coding: the spins are packed 64 to a long, one bit each with a set bit meaning up,
+//and a whole word of sites is updated at once with bit logic. a site's four neighbours are lined up with it by
+//shifting its own row word left and right and taking the same words of the rows above and below; xor with the spins
+//then marks each anti-aligned neighbour, and the four marks are added up bit-sliced into masks for k = 0, 1, 2, 3
+//or 4 anti-aligned neighbours. flipping a spin with k anti-aligned neighbours changes the energy by (8 - 4k)J.
+//the classes whose acceptance probability is 1 are flipped as a whole word; only the sites of the other classes,
+//k = 0 and 1 for a ferromagnet, need a random number each. those are 32 bit uniforms, two from every nextLong,
+//compared with thresholds precomputed from the acceptance table each half sweep, so an acceptance probability p is
+//realised as floor(p*2^32)/2^32, off by less than 2^-32.
+//the sites are updated in red/black checkerboard order, so no two sites updated together are neighbours. that needs
+//an even system size, as in CheckerboardGlauber, and periodic boundaries, which the row shifts assume.
+//a lattice held in PackedSpinStorage is updated in place, any other storage is copied into words at the start of
+//sweeps() and the flipped spins are written back at the end.
+public class MultispinGlauber {
+
+	private static final long EVEN_BITS = 0x5555555555555555L;
+
+	private final Lattice lattice;
+	private final LatticeRandom rand;
+	private final int n;
+	private final int wordsPerRow;
+	private final long lastWordMask;
+
+	//the unused half of the last random long, if any.
+	private long spareRandom;
+	private boolean haveSpare = false;
+
+	public MultispinGlauber(Lattice lattice, LatticeRandom rand){
+		this.lattice = lattice;
+		this.rand = rand;
+		this.n = lattice.getN();
+		this.wordsPerRow = (n + 63) >>> 6;
+		this.lastWordMask = (n & 63) == 0 ? -1L : (1L << n) - 1;
+	}
+
+	public static boolean supports(Lattice lattice){
+		return lattice.getN() % 2 == 0 && lattice.getBoundary() == Boundary.PERIODIC;
+	}
+
+	//the spare half of the last random long followed by the generator state.
+	public long[] getState(){
+		long[] randomState = rand.getState();
+		long[] state = new long[2 + randomState.length];
+		state[0] = haveSpare ? 1 : 0;
+		state[1] = spareRandom;
+		System.arraycopy(randomState, 0, state, 2, randomState.length);
+		return state;
+	}
+	public void setState(long[] state){
+		haveSpare = state[0] != 0;
+		spareRandom = state[1];
+		rand.setState(Arrays.copyOfRange(state, 2, state.length));
+	}
+
+	//runs nSweeps sweeps. each sweep gives every red site then every black site a single metropolis update.
+	public void sweeps(int nSweeps){
+
+		SpinStorage spins = lattice.getSpins();
+		boolean inPlace = spins instanceof PackedSpinStorage;
+		long[] words = inPlace ? ((PackedSpinStorage)spins).words() : pack(spins);
+		long[] original = inPlace ? null : words.clone();
+
+		for(int s = 0; s < nSweeps; s++){
+			halfSweep(words, 0);
+			halfSweep(words, 1);
+		}
+
+		if(!inPlace) unpack(spins, original, words);
+	}
+
+	//updates every site (i, j) with (i + j) % 2 == colour.
+	private void halfSweep(long[] words, int colour){
+
+		long t0 = threshold(8), t1 = threshold(4), t2 = threshold(0), t3 = threshold(-4), t4 = threshold(-8);
+		long always = 1L << 32;
+		long dBond = 0, dMag = 0, accepted = 0;
+
+		for(int i = 0; i < n; i++){
+
+			int row = i*wordsPerRow;
+			int above = (i == 0 ? n - 1 : i - 1)*wordsPerRow;
+			int below = (i == n - 1 ? 0 : i + 1)*wordsPerRow;
+			//every word starts on an even column, so the colour pattern is the same for all the words of a row.
+			long colourMask = ((i + colour) & 1) == 0 ? EVEN_BITS : ~EVEN_BITS;
+
+			for(int w = 0; w < wordsPerRow; w++){
+
+				long spin = words[row + w];
+				boolean last = w == wordsPerRow - 1;
+
+				//bit j of left holds spin j-1 and bit j of right spin j+1, wrapping around the row.
+				long leftCarry = w == 0 ? words[row + wordsPerRow - 1] >>> ((n - 1) & 63) : words[row + w - 1] >>> 63;
+				long rightCarry = last ? words[row] & 1 : words[row + w + 1] & 1;
+				long left = (spin << 1) | (leftCarry & 1);
+				long right = (spin >>> 1) | (rightCarry << (last ? (n - 1) & 63 : 63));
+				if(last) right &= lastWordMask;
+
+				long a1 = spin ^ words[above + w];
+				long a2 = spin ^ words[below + w];
+				long a3 = spin ^ left;
+				long a4 = spin ^ right;
+
+				//bit-sliced sum of the four anti-aligned marks.
+				long x = a1 ^ a2, c1 = a1 & a2;
+				long y = a3 ^ a4, c2 = a3 & a4;
+				long odd = x ^ y, c3 = x & y;
+				long twoOrMore = c1 | c2 | c3;
+				long four = c1 & c2;
+				long k0 = ~(odd | twoOrMore);
+				long k1 = odd & ~twoOrMore;
+				long k2 = twoOrMore & ~odd & ~four;
+				long k3 = odd & twoOrMore;
+
+				long active = colourMask & (last ? lastWordMask : -1L);
+				long sure = (t0 == always ? k0 : 0) | (t1 == always ? k1 : 0) | (t2 == always ? k2 : 0)
+						| (t3 == always ? k3 : 0) | (t4 == always ? four : 0);
+				long flips = sure & active;
+				long pending = ~sure & active;
+
+				if(pending != 0){
+					flips |= draw(pending & k0, t0) | draw(pending & k1, t1) | draw(pending & k2, t2)
+							| draw(pending & k3, t3) | draw(pending & four, t4);
+				}
+
+				words[row + w] = spin ^ flips;
+
+				int ups = Long.bitCount(flips & spin);
+				int flipped = Long.bitCount(flips);
+				dMag += 2*(flipped - 2*ups);
+				dBond += -8*Long.bitCount(flips & k0) - 4*Long.bitCount(flips & k1) + 4*Long.bitCount(flips & k3)
+						+ 8*Long.bitCount(flips & four);
+				accepted += flipped;
+			}
+		}
+
+		lattice.addToTotals(dBond, dMag);
+		lattice.addMoves((long)n*n/2, accepted);
+	}
+
+	//acceptance probability of an energy change of units*J as a 32 bit threshold, 2^32 meaning always.
+	private long threshold(int units){
+		double p = lattice.acceptanceProbability(units);
+		return p >= 1.0 ? 1L << 32 : (long)(p*4294967296.0);
+	}
+
+	//the bits of candidates that pass a draw against threshold, one draw each.
+	private long draw(long candidates, long threshold){
+
+		long passed = 0;
+		for(; candidates != 0; candidates &= candidates - 1){
+			long uniform;
+			if(haveSpare){
+				uniform = spareRandom;
+				haveSpare = false;
+			}else{
+				long r = rand.nextLong();
+				uniform = r & 0xFFFFFFFFL;
+				spareRandom = r >>> 32;
+				haveSpare = true;
+			}
+			if(uniform < threshold) passed |= candidates & -candidates;
+		}
+		return passed;
+	}
+
+	//packs a storage into row-padded words, laid out like PackedSpinStorage.
+	private long[] pack(SpinStorage spins){
+
+		long[] words = new long[n*wordsPerRow];
+		for(int i = 0; i < n; i++){
+			for(int j = 0; j < n; j++){
+				if(spins.get(i, j) == 1) words[i*wordsPerRow + (j >>> 6)] |= 1L << j;
+			}
+		}
+		return words;
+	}
+
+	//flips the spins of the storage that differ between the original and the updated words.
+	private void unpack(SpinStorage spins, long[] original, long[] words){
+
+		for(int i = 0; i < n; i++){
+			for(int w = 0; w < wordsPerRow; w++){
+				for(long changed = original[i*wordsPerRow + w] ^ words[i*wordsPerRow + w]; changed != 0; changed &= changed - 1){
+					spins.flip(i, 64*w + Long.numberOfTrailingZeros(changed));
+				}
+			}
+		}
+	}
+}
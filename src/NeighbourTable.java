@@ -0,0 +1,140 @@
+//precomputed nearest neighbours of an n x n lattice for a given Boundary, so that finding a neighbour needs no
+//boundary test. the tables are per axis, O(n) in size: up and down give the row above and below row i, left and
+//right the column either side of column j.
+//on a HELICAL lattice a step off the end of a row carries onto the next or previous row. leftCarry and rightCarry
+//are -1 in the columns where that happens and 0 elsewhere, so the row of a horizontal neighbour is
+//i + (rightCarry[j] & (down[i] - i)) without a branch.
+//on an OPEN lattice a neighbour missing at the edge points back at the site itself, and missing[k] counts those
+//for row or column k. the sum over the table neighbours then overcounts the site's own spin missing[i] + missing[j]
+//times, which is taken off again.
+//full scans work a row at a time on copies padded with a halo: the spin just past the end of the row is the right
+//neighbour of its last site, or 0 if there is none, so the inner loop is the same for every boundary and every
+//column and the JIT is free to vectorise it.
+public class NeighbourTable {
+
+	private final int n;
+	private final Boundary boundary;
+	private final boolean open;
+	private final int[] up, down, left, right;
+	private final int[] leftCarry, rightCarry;
+	private final int[] missing;
+
+	public NeighbourTable(int n, Boundary boundary){
+
+		this.n = n;
+		this.boundary = boundary;
+		this.up = new int[n];
+		this.down = new int[n];
+		this.left = new int[n];
+		this.right = new int[n];
+		this.leftCarry = new int[n];
+		this.rightCarry = new int[n];
+		this.missing = new int[n];
+
+		this.open = boundary == Boundary.OPEN;
+		boolean helical = boundary == Boundary.HELICAL;
+
+		for(int k = 0; k < n; k++){
+
+			boolean first = k == 0, last = k == n - 1;
+
+			up[k] = first ? (open ? k : n - 1) : k - 1;
+			down[k] = last ? (open ? k : 0) : k + 1;
+			left[k] = up[k];
+			right[k] = down[k];
+			leftCarry[k] = helical && first ? -1 : 0;
+			rightCarry[k] = helical && last ? -1 : 0;
+			missing[k] = open ? (first ? 1 : 0) + (last ? 1 : 0) : 0;
+		}
+	}
+
+	public int getN(){
+		return n;
+	}
+	public Boundary getBoundary(){
+		return boundary;
+	}
+
+	public int up(int i){
+		return up[i];
+	}
+	public int down(int i){
+		return down[i];
+	}
+	public int left(int j){
+		return left[j];
+	}
+	public int right(int j){
+		return right[j];
+	}
+	//rows of the left and right neighbours of (i, j).
+	public int leftRow(int i, int j){
+		return i + (leftCarry[j] & (up[i] - i));
+	}
+	public int rightRow(int i, int j){
+		return i + (rightCarry[j] & (down[i] - i));
+	}
+	//whether (i, j) has each of its neighbours, false only at the edges of an open lattice.
+	public boolean hasUp(int i){
+		return !open || i > 0;
+	}
+	public boolean hasDown(int i){
+		return !open || i < n - 1;
+	}
+	public boolean hasLeft(int j){
+		return !open || j > 0;
+	}
+	public boolean hasRight(int j){
+		return !open || j < n - 1;
+	}
+
+	//number of bonds joining two different sites: 1 for nearest neighbours, 0 otherwise, and 2 when the lattice is
+	//only 2 sites across and the pair neighbours each other both ways round.
+	public int bondsBetween(int i1, int j1, int i2, int j2){
+
+		int bonds = 0;
+		if(j1 == j2 && up[i1] == i2) bonds++;
+		if(j1 == j2 && down[i1] == i2) bonds++;
+		if(left[j1] == j2 && leftRow(i1, j1) == i2) bonds++;
+		if(right[j1] == j2 && rightRow(i1, j1) == i2) bonds++;
+		return bonds;
+	}
+
+	//sum of the spins of the neighbours of (i, j).
+	public int neighbourSum(SpinStorage spins, int i, int j){
+
+		int u = up[i], d = down[i];
+		int h = spins.get(u, j) + spins.get(d, j)
+				+ spins.get(i + (leftCarry[j] & (u - i)), left[j])
+				+ spins.get(i + (rightCarry[j] & (d - i)), right[j]);
+
+		return h - spins.get(i, j)*(missing[i] + missing[j]);
+	}
+
+	//sum of s_i*s_j over every bond, each counted once through the down and right neighbours of its sites.
+	public long bondSum(SpinStorage spins){
+
+		byte[] row = new byte[n + 1];
+		byte[] below = new byte[n + 1];
+		long bonds = 0;
+
+		spins.copyRow(0, below, 0);
+		for(int i = 0; i < n; i++){
+
+			byte[] swap = row;
+			row = below;
+			below = swap;
+			spins.copyRow(down[i], below, 0);
+
+			int downWeight = hasDown(i) ? 1 : 0;
+			row[n] = (byte)(hasRight(n - 1) ? spins.get(rightRow(i, n - 1), right[n - 1]) : 0);
+
+			int rowBonds = 0;
+			for(int j = 0; j < n; j++){
+				rowBonds += row[j]*(row[j + 1] + downWeight*below[j]);
+			}
+			bonds += rowBonds;
+		}
+		return bonds;
+	}
+}
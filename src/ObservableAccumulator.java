@@ -0,0 +1,112 @@
+//single pass accumulator for the thermodynamic observables of a run. the lattice feeds it one (E, M) pair per
+//measurement and it keeps welford running means and squared deviations, plus the running mean of M^4 for the binder
+//cumulant, in constant memory. accumulators filled on different threads can be merged.
+//not thread safe: every thread should fill its own accumulator and merge them at the end.
+public class ObservableAccumulator {
+
+	private final Moments energy = new Moments();
+	private final Moments magnetisation = new Moments();
+
+	public void add(double E, double M){
+		energy.add(E);
+		magnetisation.add(M);
+	}
+
+	//folds the samples of other into this accumulator.
+	public void merge(ObservableAccumulator other){
+		energy.merge(other.energy);
+		magnetisation.merge(other.magnetisation);
+	}
+
+	public long getCount(){
+		return energy.getCount();
+	}
+
+	public double getMeanEnergy(){
+		return energy.getMean();
+	}
+	public double getEnergyVariance(){
+		return energy.getVariance();
+	}
+
+	public double getMeanMagnetisation(){
+		return magnetisation.getMean();
+	}
+	public double getMagnetisationVariance(){
+		return magnetisation.getVariance();
+	}
+
+	//chi = var(M)/(N*T) with N = systemSize^2 particles, as in Lattice.susceptibility.
+	public double getSusceptibility(double T, int systemSize){
+		return magnetisation.getVariance()/(systemSize*systemSize*T);
+	}
+
+	//C = var(E)/T^2, as in Lattice.heatCapacity.
+	public double getHeatCapacity(double T){
+		return energy.getVariance()/(T*T);
+	}
+
+	//binder cumulant U = 1 - <M^4>/(3<M^2>^2).
+	public double getBinderCumulant(){
+		double meanSq = magnetisation.getMeanSquare();
+		return 1.0 - magnetisation.getMeanFourth()/(3.0*meanSq*meanSq);
+	}
+
+
+	//running moments of one series: welford mean and sum of squared deviations, and the mean of x^4.
+	public static class Moments {
+
+		private long n = 0;
+		private double mean = 0.0;
+		private double m2 = 0.0;
+		private double meanFourth = 0.0;
+
+		public void add(double x){
+
+			n++;
+			double delta = x - mean;
+			mean += delta/n;
+			m2 += delta*(x - mean);
+			meanFourth += (x*x*x*x - meanFourth)/n;
+		}
+
+		//chan et al.'s pairwise combination of the two sets of moments.
+		public void merge(Moments other){
+
+			if(other.n == 0) return;
+			if(n == 0){
+				n = other.n;
+				mean = other.mean;
+				m2 = other.m2;
+				meanFourth = other.meanFourth;
+				return;
+			}
+
+			long total = n + other.n;
+			double delta = other.mean - mean;
+
+			m2 += other.m2 + delta*delta*((double)n*other.n/total);
+			mean += delta*other.n/total;
+			meanFourth += (other.meanFourth - meanFourth)*other.n/total;
+			n = total;
+		}
+
+		public long getCount(){
+			return n;
+		}
+		public double getMean(){
+			return mean;
+		}
+
+		//population variance <x^2> - <x>^2, dividing by n like the rest of the code.
+		public double getVariance(){
+			return (n == 0) ? 0.0 : m2/n;
+		}
+		public double getMeanSquare(){
+			return getVariance() + mean*mean;
+		}
+		public double getMeanFourth(){
+			return meanFourth;
+		}
+	}
+}
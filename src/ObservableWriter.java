@@ -0,0 +1,309 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Semaphore;
+
+
+//streams every (T, E, M) sample of a run to a binary columnar file from a background thread, so the simulation
+//never waits on the disk. samples are gathered into chunks; full chunks are handed to the writer thread and empty
+//ones handed back, with a fixed number of chunks in play. the simulation only waits if the writer falls that many
+//chunks behind.
+//
+//file layout, all little-endian:
+//  header: magic "ISNGOBSV" (8 bytes), version (int), number of columns (int), then for every column its name as
+//          an int length and UTF-8 bytes. the columns are T, E and M.
+//  chunks: number of rows (int), then that many doubles of each column in turn.
+//exportText() turns a file back into "T, E, M" text lines.
+//a run resumed from a checkpoint first cuts its file back to the samples the checkpoint covers with keepFirst(),
+//then opens it for appending, so every sample ends up in the file once.
+public class ObservableWriter implements AutoCloseable {
+
+	private static final long MAGIC = 0x5642534F474E5349L;
+	private static final int VERSION = 1;
+	private static final String[] COLUMNS = {"T", "E", "M"};
+	private static final double[][] POISON = new double[0][];
+	private static final double[][] FLUSH = new double[0][];
+
+	private final FileChannel channel;
+	private final int chunkSize;
+	private final BlockingQueue<double[][]> full;
+	private final BlockingQueue<double[][]> empty;
+	private final Thread writerThread;
+	private final ByteBuffer buffer;
+	private volatile IOException failure;
+	private final Semaphore flushed = new Semaphore(0);
+
+	private double[][] current;
+	private int rows = 0;
+
+	public ObservableWriter(Path file) throws IOException {
+		this(file, 4096, 8, false);
+	}
+
+	//with append set, samples are added to the end of an existing file instead of starting it afresh.
+	public ObservableWriter(Path file, boolean append) throws IOException {
+		this(file, 4096, 8, append);
+	}
+
+	//chunkSize rows per chunk and at most nChunks chunks in memory at once.
+	public ObservableWriter(Path file, int chunkSize, int nChunks, boolean append) throws IOException {
+
+		boolean continuing = append && Files.exists(file) && Files.size(file) > 0;
+		this.channel = continuing ? FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.APPEND)
+				: FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+		this.chunkSize = chunkSize;
+		this.full = new ArrayBlockingQueue<double[][]>(nChunks + 1);
+		this.empty = new ArrayBlockingQueue<double[][]>(nChunks);
+		this.buffer = ByteBuffer.allocateDirect(4 + 8*COLUMNS.length*chunkSize).order(ByteOrder.LITTLE_ENDIAN);
+
+		for(int c = 0; c < nChunks - 1; c++){
+			empty.add(new double[COLUMNS.length][chunkSize]);
+		}
+		current = new double[COLUMNS.length][chunkSize];
+
+		if(!continuing) writeHeader();
+
+		writerThread = new Thread(this::drain, "observable-writer");
+		writerThread.setDaemon(true);
+		writerThread.start();
+	}
+
+	//adds one sample. safe to call from several simulation threads.
+	public synchronized void record(double T, double E, double M){
+
+		current[0][rows] = T;
+		current[1][rows] = E;
+		current[2][rows] = M;
+		rows++;
+
+		if(rows == chunkSize) handOver();
+	}
+
+	private void handOver(){
+
+		double[][] next;
+		try{
+			full.put(current);
+			next = empty.take();
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while handing over samples", e);
+		}
+		current = next;
+		rows = 0;
+	}
+
+	//hands the samples of a part filled chunk to the writer thread. the chunk itself is kept for more samples.
+	private void handOverPart() throws InterruptedException {
+
+		if(rows == 0) return;
+		double[][] part = new double[COLUMNS.length][];
+		for(int c = 0; c < COLUMNS.length; c++){
+			part[c] = Arrays.copyOf(current[c], rows);
+		}
+		full.put(part);
+		rows = 0;
+	}
+
+	//blocks until every sample recorded so far is written and forced to disk. throws anything the writer hit.
+	public synchronized void flush() throws IOException {
+
+		try{
+			handOverPart();
+			full.put(FLUSH);
+			flushed.acquire();
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while flushing", e);
+		}
+		if(failure != null) throw failure;
+	}
+
+	//writes out what is left, stops the writer thread and closes the file. throws anything the writer hit.
+	@Override
+	public synchronized void close() throws IOException {
+
+		try{
+			handOverPart();
+			full.put(POISON);
+			writerThread.join();
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted while closing", e);
+		}finally{
+			channel.close();
+		}
+		if(failure != null) throw failure;
+	}
+
+	private void writeHeader() throws IOException {
+
+		ByteBuffer header = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+		header.putLong(MAGIC);
+		header.putInt(VERSION);
+		header.putInt(COLUMNS.length);
+		for(String name : COLUMNS){
+			byte[] bytes = name.getBytes(StandardCharsets.UTF_8);
+			header.putInt(bytes.length);
+			header.put(bytes);
+		}
+		header.flip();
+		while(header.hasRemaining()) channel.write(header);
+	}
+
+	//writer thread: writes chunks until the poison chunk arrives. after a failure it keeps taking chunks, so the
+	//simulation never blocks, but throws them away.
+	private void drain(){
+
+		while(true){
+
+			double[][] chunk;
+			try{
+				chunk = full.take();
+			}catch(InterruptedException e){
+				return;
+			}
+			if(chunk == POISON) return;
+			if(chunk == FLUSH){
+				try{
+					if(failure == null) channel.force(false);
+				}catch(IOException e){
+					failure = e;
+				}
+				flushed.release();
+				continue;
+			}
+
+			if(failure == null){
+				try{
+					writeChunk(chunk);
+				}catch(IOException e){
+					failure = e;
+				}
+			}
+			if(chunk[0].length == chunkSize) empty.offer(chunk);
+		}
+	}
+
+	private void writeChunk(double[][] chunk) throws IOException {
+
+		int n = chunk[0].length;
+		buffer.clear();
+		buffer.putInt(n);
+		for(double[] column : chunk){
+			for(int i = 0; i < n; i++){
+				buffer.putDouble(column[i]);
+			}
+		}
+		buffer.flip();
+		while(buffer.hasRemaining()) channel.write(buffer);
+	}
+
+	//cuts a file back to the first samplesKept.get(T) samples of each temperature T, none for a temperature not in
+	//the map, in their original order. a chunk cut short by a kill is dropped. the kept samples are written to a
+	//temporary file that is then moved over the old one, so a kill part way through leaves the old file as it was.
+	public static void keepFirst(Path file, Map<Double, Integer> samplesKept) throws IOException {
+
+		ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.LITTLE_ENDIAN);
+		if(in.getLong() != MAGIC) throw new IOException(file + " is not an observables file");
+		if(in.getInt() != VERSION) throw new IOException(file + " has an unknown version");
+
+		int nColumns = in.getInt();
+		for(int c = 0; c < nColumns; c++){
+			int nameLength = in.getInt();
+			in.position(in.position() + nameLength);
+		}
+		int headerLength = in.position();
+
+		Map<Double, Integer> remaining = new HashMap<Double, Integer>(samplesKept);
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+
+		try(FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+				StandardOpenOption.TRUNCATE_EXISTING)){
+
+			ByteBuffer header = ByteBuffer.wrap(in.array(), 0, headerLength);
+			while(header.hasRemaining()) out.write(header);
+
+			while(in.remaining() >= 4){
+
+				int n = in.getInt();
+				int start = in.position();
+				if(n < 0 || in.remaining() < 8*nColumns*n) break;
+
+				boolean[] kept = new boolean[n];
+				int nKept = 0;
+				for(int i = 0; i < n; i++){
+					double T = in.getDouble(start + 8*i);
+					Integer left = remaining.get(T);
+					if(left == null || left == 0) continue;
+					remaining.put(T, left - 1);
+					kept[i] = true;
+					nKept++;
+				}
+
+				if(nKept > 0){
+					ByteBuffer chunk = ByteBuffer.allocate(4 + 8*nColumns*nKept).order(ByteOrder.LITTLE_ENDIAN);
+					chunk.putInt(nKept);
+					for(int c = 0; c < nColumns; c++){
+						for(int i = 0; i < n; i++){
+							if(kept[i]) chunk.putDouble(in.getDouble(start + 8*(c*n + i)));
+						}
+					}
+					chunk.flip();
+					while(chunk.hasRemaining()) out.write(chunk);
+				}
+				in.position(start + 8*nColumns*n);
+			}
+			out.force(true);
+		}
+		Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	//writes a binary observables file out as "T, E, M" text lines, in the style of Toolbox.writeResultsToFile.
+	//as in keepFirst, a chunk cut short by a kill is left out, so the export stops at the last complete one.
+	public static void exportText(Path binary, Path text) throws IOException {
+
+		ByteBuffer in = ByteBuffer.wrap(Files.readAllBytes(binary)).order(ByteOrder.LITTLE_ENDIAN);
+		if(in.getLong() != MAGIC) throw new IOException(binary + " is not an observables file");
+		if(in.getInt() != VERSION) throw new IOException(binary + " has an unknown version");
+
+		int nColumns = in.getInt();
+		for(int c = 0; c < nColumns; c++){
+			int nameLength = in.getInt();
+			in.position(in.position() + nameLength);
+		}
+
+		try(BufferedWriter bw = Files.newBufferedWriter(text, StandardCharsets.UTF_8)){
+
+			while(in.remaining() >= 4){
+
+				int n = in.getInt();
+				int start = in.position();
+				if(n < 0 || in.remaining() < 8*nColumns*n) break;
+
+				for(int i = 0; i < n; i++){
+					StringBuilder line = new StringBuilder();
+					for(int c = 0; c < nColumns; c++){
+						if(c > 0) line.append(", ");
+						line.append(String.valueOf(in.getDouble(start + 8*(c*n + i))));
+					}
+					bw.write(line.toString());
+					bw.newLine();
+				}
+				in.position(start + 8*nColumns*n);
+			}
+		}
+	}
+}
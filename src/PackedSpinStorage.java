@@ -0,0 +1,59 @@
+//spin storage holding 64 spins per long, one bit per spin with a set bit meaning spin up.
+//every row starts on a fresh word, so two different rows never share a long.
+public class PackedSpinStorage implements SpinStorage {
+
+	private final int n;
+	private final int wordsPerRow;
+	private final long[] words;
+
+	public PackedSpinStorage(int n){
+		this.n = n;
+		this.wordsPerRow = (n + 63) >>> 6;
+		this.words = new long[n*wordsPerRow];
+	}
+
+	public int getN(){
+		return n;
+	}
+
+	public int get(int i, int j){
+		int bit = (int)(words[i*wordsPerRow + (j >>> 6)] >>> j) & 1;
+		return 2*bit - 1;
+	}
+
+	public void set(int i, int j, int state){
+		int w = i*wordsPerRow + (j >>> 6);
+		long mask = 1L << j;
+		if(state == 1) words[w] |= mask;
+		else words[w] &= ~mask;
+	}
+
+	public void flip(int i, int j){
+		words[i*wordsPerRow + (j >>> 6)] ^= 1L << j;
+	}
+
+	public void copyRow(int i, byte[] row, int offset){
+		for(int j = 0; j < n; j++){
+			int bit = (int)(words[i*wordsPerRow + (j >>> 6)] >>> j) & 1;
+			row[offset + j] = (byte)(2*bit - 1);
+		}
+	}
+
+	//the packed words themselves, for engines that update whole words in place.
+	long[] words(){
+		return words;
+	}
+
+	//copy of the packed words, row by row.
+	public long[] copyWords(){
+		return words.clone();
+	}
+	public void setWords(long[] newWords){
+		System.arraycopy(newWords, 0, words, 0, words.length);
+	}
+
+	//16 byte array header plus 8 bytes per word.
+	public long memoryFootprint(){
+		return 16 + 8L*words.length;
+	}
+}
@@ -0,0 +1,160 @@
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+
+//parallel kawasaki dynamics by domain decomposition. the rows are cut into an even number of bands, each at least
+//two rows high, and the bands are updated alternately: first the even bands, all in parallel, then the odd ones.
+//inside an active band each move picks a random site and one of its 4 neighbours and swaps them if the pair lies
+//wholly inside the band. a move reads at most one row outside its band, and that row belongs to an inactive band,
+//so no two threads ever touch the same spin. the band boundaries are shifted by a random row offset every sweep
+//so every nearest neighbour pair can be proposed.
+//
+//equivalence with kawasakiDynamics(): both are metropolis chains with a symmetric proposal that only ever swap
+//spins, so both sample the canonical distribution at fixed magnetisation. the local moves only change how fast
+//that distribution is reached, not the equilibrium averages. ParallelKawasakiTest checks this against the mean
+//energy of both serial engines.
+public class ParallelKawasaki {
+
+	private final Lattice lattice;
+	private final ForkJoinPool pool;
+	private final LatticeRandom master;
+	private final int nBands;
+	private final LatticeRandom[] bandRands;
+	private final long[] bandBondDeltas;
+	private final long[] bandAccepts;
+	private int rowOffset;
+
+	public ParallelKawasaki(Lattice lattice, ForkJoinPool pool, LatticeRandom master){
+		this.lattice = lattice;
+		this.pool = pool;
+		this.master = master;
+		int maxBands = lattice.getN()/2;
+		this.nBands = Math.max(2, Math.min(maxBands, 4*pool.getParallelism()) & ~1);
+		this.bandRands = new LatticeRandom[nBands];
+		this.bandBondDeltas = new long[nBands];
+		this.bandAccepts = new long[nBands];
+	}
+
+	//needs at least two bands of two rows each, and the bands and partners wrap round periodically.
+	public static boolean supports(Lattice lattice){
+		return lattice.getN() >= 4 && lattice.getBoundary() == Boundary.PERIODIC;
+	}
+
+	//the band streams and the row offset are drawn afresh from the master generator every sweep, so its state is all
+	//the engine carries from one sweep to the next.
+	public long[] getState(){
+		return master.getState();
+	}
+	public void setState(long[] state){
+		master.setState(state);
+	}
+
+	//one sweep is n*n attempted swaps, half in the even bands and half in the odd ones.
+	public void sweep(){
+		rowOffset = master.nextInt(lattice.getN());
+		halfSweep(0);
+		halfSweep(1);
+	}
+
+	public void sweeps(int nSweeps){
+		for(int s = 0; s < nSweeps; s++){
+			sweep();
+		}
+	}
+
+	private void halfSweep(int parity){
+
+		for(int b = parity; b < nBands; b += 2){
+			bandRands[b] = master.split();
+			bandBondDeltas[b] = 0;
+		}
+
+		pool.invoke(new BandTask(parity, 0, nBands/2));
+
+		long dBond = 0, accepted = 0;
+		for(int b = parity; b < nBands; b += 2){
+			dBond += bandBondDeltas[b];
+			accepted += bandAccepts[b];
+		}
+		lattice.addToTotals(dBond, 0);
+		lattice.addMoves(attemptsPerHalfSweep(parity), accepted);
+	}
+
+	//one attempt per site of the bands of the given parity.
+	private long attemptsPerHalfSweep(int parity){
+		int n = lattice.getN();
+		long rows = 0;
+		for(int b = parity; b < nBands; b += 2){
+			rows += (long)(b+1)*n/nBands - (long)b*n/nBands;
+		}
+		return rows*n;
+	}
+
+	//attempts one local swap per site of band b.
+	private void updateBand(int b){
+
+		int n = lattice.getN();
+		int bandStart = (int)((long)b*n/nBands);
+		int height = (int)((long)(b+1)*n/nBands) - bandStart;
+		SpinStorage spins = lattice.getSpins();
+		LatticeRandom rand = bandRands[b];
+		long dBond = 0, accepted = 0;
+
+		for(int attempt = height*n; attempt > 0; attempt--){
+
+			int r1 = rand.nextInt(height);
+			int j1 = rand.nextInt(n);
+			int r2 = r1, j2 = j1;
+
+			switch(rand.nextInt(4)){
+			case 0: r2 = r1 - 1; break;
+			case 1: r2 = r1 + 1; break;
+			case 2: j2 = (j1 == 0) ? n - 1 : j1 - 1; break;
+			default: j2 = (j1 == n - 1) ? 0 : j1 + 1; break;
+			}
+			if(r2 < 0 || r2 >= height) continue;
+
+			int i1 = (rowOffset + bandStart + r1) % n;
+			int i2 = (rowOffset + bandStart + r2) % n;
+			int s1 = spins.get(i1, j1);
+			int s2 = spins.get(i2, j2);
+			if(s1 == s2) continue;
+
+			//flipping both spins of an unlike nearest neighbour pair: each flip on its own, plus 4J for the shared bond.
+			int deltaUnits = 2*(s1*lattice.neighbourSum(i1, j1) + s2*lattice.neighbourSum(i2, j2)) + 4;
+			double p = lattice.acceptanceProbability(deltaUnits);
+
+			if(p >= 1.0 || rand.nextDouble() <= p){
+				spins.flip(i1, j1);
+				spins.flip(i2, j2);
+				dBond -= deltaUnits;
+				accepted++;
+			}
+		}
+		bandBondDeltas[b] = dBond;
+		bandAccepts[b] = accepted;
+	}
+
+	//splits the active bands of a half sweep across the pool. task k updates band 2k + parity.
+	private class BandTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+		private final int parity, from, to;
+
+		BandTask(int parity, int from, int to){
+			this.parity = parity;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute(){
+			if(to - from == 1){
+				updateBand(2*from + parity);
+			}else{
+				int mid = (from + to) >>> 1;
+				invokeAll(new BandTask(parity, from, mid), new BandTask(parity, mid, to));
+			}
+		}
+	}
+}
@@ -0,0 +1,260 @@
+import java.util.Arrays;
+
+
+//up to 64 independent replicas of one n x n lattice, updated together. the spins are interleaved: word s of the
+//array holds site s of every replica, bit r for replica r, with a set bit meaning up. a sweep visits the sites in
+//order and updates that site in all the replicas at once with the same bit logic as MultispinGlauber: xor with the
+//four neighbour words marks the anti-aligned neighbours, a bit-sliced adder sorts the replicas into k = 0 ... 4
+//anti-aligned neighbours, k >= 2 always flips and each k = 0 or 1 replica draws its own 32 bit uniform against a
+//threshold from exp(-(8 - 4k)/T). the replicas only share the order the sites are visited in, which doesn't
+//depend on their spins, so they are independent markov chains.
+//J and kB are 1, as in the Lattice defaults, and the boundaries are periodic.
+//the energy and magnetisation of every replica are kept as running totals. sample() records them, and the
+//observables of each replica are worked out by Lattice.susceptibility and Lattice.heatCapacity, so the error bar
+//of the batch is just the spread of the replicas.
+public class ReplicaBatch {
+
+	public static final int MAX_REPLICAS = 64;
+
+	private final int n;
+	private final int nReplicas;
+	private final long replicaMask;
+	private final long[] spins;
+	private final LatticeRandom rand;
+	private double T;
+	private long t0, t1;
+
+	//bondSum and magnetisation of each replica, as in Lattice.
+	private final long[] bondSums;
+	private final long[] magnetisations;
+
+	private long spareRandom;
+	private boolean haveSpare = false;
+
+	private double[][] magnetisms, energies;
+
+	//every replica starts from its own random configuration.
+	public ReplicaBatch(int n, int nReplicas, double T, LatticeRandom rand){
+
+		if(nReplicas < 1 || nReplicas > MAX_REPLICAS){
+			throw new IllegalArgumentException("between 1 and " + MAX_REPLICAS + " replicas, not " + nReplicas);
+		}
+		this.n = n;
+		this.nReplicas = nReplicas;
+		this.replicaMask = nReplicas == 64 ? -1L : (1L << nReplicas) - 1;
+		this.spins = new long[n*n];
+		this.rand = rand;
+		this.bondSums = new long[nReplicas];
+		this.magnetisations = new long[nReplicas];
+
+		for(int s = 0; s < spins.length; s++){
+			spins[s] = rand.nextLong() & replicaMask;
+		}
+		setT(T);
+		recomputeTotals();
+	}
+
+	public int getN(){
+		return n;
+	}
+	public int getNReplicas(){
+		return nReplicas;
+	}
+	public double getT(){
+		return T;
+	}
+	public void setT(double T){
+		this.T = T;
+		this.t0 = threshold(8);
+		this.t1 = threshold(4);
+	}
+
+	public double getEnergy(int r){
+		return -bondSums[r];
+	}
+	public double getMagnetisation(int r){
+		return magnetisations[r];
+	}
+	public int getPointState(int r, int i, int j){
+		return (int)(spins[i*n + j] >>> r & 1)*2 - 1;
+	}
+
+	//acceptance probability of an energy change of units as a 32 bit threshold.
+	private long threshold(int units){
+		double p = Math.exp(-units/T);
+		return p >= 1.0 ? 1L << 32 : (long)(p*4294967296.0);
+	}
+
+	//one sweep: every site of every replica gets a single metropolis update.
+	public void sweep(){
+
+		for(int i = 0; i < n; i++){
+
+			int row = i*n;
+			int above = (i == 0 ? n - 1 : i - 1)*n;
+			int below = (i == n - 1 ? 0 : i + 1)*n;
+
+			for(int j = 0; j < n; j++){
+
+				int left = j == 0 ? n - 1 : j - 1;
+				int right = j == n - 1 ? 0 : j + 1;
+				long spin = spins[row + j];
+
+				long a1 = spin ^ spins[above + j];
+				long a2 = spin ^ spins[below + j];
+				long a3 = spin ^ spins[row + left];
+				long a4 = spin ^ spins[row + right];
+
+				long x = a1 ^ a2, c1 = a1 & a2;
+				long y = a3 ^ a4, c2 = a3 & a4;
+				long odd = x ^ y, c3 = x & y;
+				long twoOrMore = c1 | c2 | c3;
+				long four = c1 & c2;
+				long k0 = ~(odd | twoOrMore) & replicaMask;
+				long k1 = odd & ~twoOrMore & replicaMask;
+				long k3 = odd & twoOrMore;
+
+				long flips = (twoOrMore & replicaMask) | draw(k0, t0) | draw(k1, t1);
+				if(flips == 0) continue;
+				spins[row + j] = spin ^ flips;
+
+				//flipping a spin with k anti-aligned neighbours changes its bondSum by 4k - 8.
+				addToBondSums(flips & k0, -8);
+				addToBondSums(flips & k1, -4);
+				addToBondSums(flips & k3, 4);
+				addToBondSums(flips & four, 8);
+				addToMagnetisations(flips & spin, -2);
+				addToMagnetisations(flips & ~spin, 2);
+			}
+		}
+	}
+
+	public void sweeps(int nSweeps){
+		for(int s = 0; s < nSweeps; s++){
+			sweep();
+		}
+	}
+
+	private void addToBondSums(long replicas, int delta){
+		for(; replicas != 0; replicas &= replicas - 1){
+			bondSums[Long.numberOfTrailingZeros(replicas)] += delta;
+		}
+	}
+
+	private void addToMagnetisations(long replicas, int delta){
+		for(; replicas != 0; replicas &= replicas - 1){
+			magnetisations[Long.numberOfTrailingZeros(replicas)] += delta;
+		}
+	}
+
+	//the bits of candidates that pass a draw against threshold, one 32 bit uniform each.
+	private long draw(long candidates, long threshold){
+
+		long passed = 0;
+		for(; candidates != 0; candidates &= candidates - 1){
+			long uniform;
+			if(haveSpare){
+				uniform = spareRandom;
+				haveSpare = false;
+			}else{
+				long r = rand.nextLong();
+				uniform = r & 0xFFFFFFFFL;
+				spareRandom = r >>> 32;
+				haveSpare = true;
+			}
+			if(uniform < threshold) passed |= candidates & -candidates;
+		}
+		return passed;
+	}
+
+	//resets the running totals of every replica from a full scan.
+	private void recomputeTotals(){
+
+		Arrays.fill(bondSums, 0);
+		Arrays.fill(magnetisations, 0);
+
+		for(int i = 0; i < n; i++){
+			for(int j = 0; j < n; j++){
+				long spin = spins[i*n + j];
+				long down = spins[((i + 1) % n)*n + j];
+				long right = spins[i*n + (j + 1) % n];
+				for(int r = 0; r < nReplicas; r++){
+					long bit = 1L << r;
+					bondSums[r] += ((spin ^ down) & bit) == 0 ? 1 : -1;
+					bondSums[r] += ((spin ^ right) & bit) == 0 ? 1 : -1;
+					magnetisations[r] += (spin & bit) != 0 ? 1 : -1;
+				}
+			}
+		}
+	}
+
+	//checks the running totals against a full rescan and throws if they have drifted.
+	public void verifyTotals(){
+
+		long[] bonds = bondSums.clone(), mags = magnetisations.clone();
+		recomputeTotals();
+
+		for(int r = 0; r < nReplicas; r++){
+			if(bonds[r] != bondSums[r] || mags[r] != magnetisations[r]){
+				throw new IllegalStateException("running totals of replica " + r + " out of step: bondSum = " + bonds[r]
+						+ " (scan " + bondSums[r] + "), M = " + mags[r] + " (scan " + magnetisations[r] + ")");
+			}
+		}
+	}
+
+	//equilibrates every replica for equibSweeps sweeps, then records nSamples energies and magnetisations of each,
+	//sweepsBetween sweeps apart.
+	public void sample(int equibSweeps, int nSamples, int sweepsBetween){
+
+		magnetisms = new double[nReplicas][nSamples];
+		energies = new double[nReplicas][nSamples];
+		sweeps(equibSweeps);
+
+		for(int i = 0; i < nSamples; i++){
+			sweeps(sweepsBetween);
+			for(int r = 0; r < nReplicas; r++){
+				magnetisms[r][i] = magnetisations[r];
+				energies[r][i] = -bondSums[r];
+			}
+		}
+	}
+
+	//the samples of replica r from the last sample().
+	public double[] getMagnetisms(int r){
+		return magnetisms[r];
+	}
+	public double[] getEnergies(int r){
+		return energies[r];
+	}
+
+	//susceptibility and heat capacity of each replica from the last sample().
+	public double[] getSusceptibilities(){
+		double[] chi = new double[nReplicas];
+		for(int r = 0; r < nReplicas; r++){
+			chi[r] = Lattice.susceptibility(magnetisms[r], T, n);
+		}
+		return chi;
+	}
+	public double[] getCapacities(){
+		double[] c = new double[nReplicas];
+		for(int r = 0; r < nReplicas; r++){
+			c[r] = Lattice.heatCapacity(energies[r], T);
+		}
+		return c;
+	}
+
+	//mean over the replicas of a per-replica observable, and its standard error. the replicas are independent,
+	//so unlike a single chain this needs no blocking or resampling. the error uses the sample variance, so it is NaN
+	//for a single replica.
+	public static double replicaMean(double[] values){
+		return Toolbox.avgArrayValue(values);
+	}
+	public static double replicaError(double[] values){
+
+		ObservableAccumulator.Moments moments = new ObservableAccumulator.Moments();
+		for(double v : values){
+			moments.add(v);
+		}
+		return Math.sqrt(moments.getVariance()/(values.length - 1));
+	}
+}
@@ -0,0 +1,136 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+
+//parallel tempering. M replicas sit on a ladder of temperatures and are updated concurrently; every round,
+//neighbouring rungs try to swap configurations with metropolis probability min(1, exp((b1 - b2)(E1 - E2))), with
+//b = 1/kBT. a swap just exchanges the temperatures of the two lattices, which is the same as exchanging their spins.
+//swaps are tried on the even pairs of rungs one round and the odd pairs the next.
+public class ReplicaExchange {
+
+	private final double[] ladder;
+	private final Lattice[] replicas;
+	private final int[] replicaAtRung;
+	private final String dynamicsChoice;
+	private final LatticeRandom rand;
+	private final ExecutorService pool;
+	private final long[] swapAttempts, swapAccepts;
+	private int round = 0;
+
+	//the ladder must be sorted by temperature. replicas start with all spins up.
+	public ReplicaExchange(int systemSize, double[] ladder, String dynamicsChoice, long seed, int nThreads){
+
+		int M = ladder.length;
+		this.ladder = ladder.clone();
+		this.replicas = new Lattice[M];
+		this.replicaAtRung = new int[M];
+		this.dynamicsChoice = dynamicsChoice;
+		this.rand = new LatticeRandom.SplitMix(seed);
+		this.pool = Executors.newFixedThreadPool(nThreads);
+		this.swapAttempts = new long[M - 1];
+		this.swapAccepts = new long[M - 1];
+
+		for(int k = 0; k < M; k++){
+			replicas[k] = new Lattice(LatticePoint.allPointsUp(systemSize), ladder[k]);
+			replicas[k].setRandom(rand.split());
+			replicaAtRung[k] = k;
+		}
+	}
+
+	//geometric ladder of M temperatures from tMin to tMax, which gives roughly even swap rates away from T_c.
+	//a ladder of one rung is just tMin.
+	public static double[] geometricLadder(double tMin, double tMax, int M){
+
+		if(M < 1) throw new IllegalArgumentException("a ladder needs at least one temperature, not " + M);
+		if(M == 1) return new double[]{tMin};
+
+		double[] ladder = new double[M];
+		for(int k = 0; k < M; k++){
+			ladder[k] = tMin*Math.pow(tMax/tMin, k/(double)(M - 1));
+		}
+		return ladder;
+	}
+
+	//the lattice currently at rung k of the ladder.
+	public Lattice getLattice(int k){
+		return replicas[replicaAtRung[k]];
+	}
+
+	public double[] getLadder(){
+		return ladder.clone();
+	}
+
+	//one round: every replica gets the given number of updates, in parallel, then neighbouring rungs try to swap.
+	public void round(int iterations){
+
+		List<Callable<Object>> tasks = new ArrayList<Callable<Object>>();
+		for(Lattice replica : replicas){
+			tasks.add(() -> {
+				replica.dynamicsRepeated(iterations, dynamicsChoice);
+				return null;
+			});
+		}
+
+		try{
+			for(Future<Object> f : pool.invokeAll(tasks)){
+				f.get();
+			}
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("replica exchange interrupted", e);
+		}catch(ExecutionException e){
+			throw new IllegalStateException("replica update failed", e.getCause());
+		}
+
+		for(int k = round % 2; k < ladder.length - 1; k += 2){
+			attemptSwap(k);
+		}
+		round++;
+	}
+
+	public void rounds(int nRounds, int iterations){
+		for(int r = 0; r < nRounds; r++){
+			round(iterations);
+		}
+	}
+
+	//metropolis swap of the configurations at rungs k and k+1.
+	private void attemptSwap(int k){
+
+		Lattice low = getLattice(k);
+		Lattice high = getLattice(k + 1);
+		double betaLow = 1.0/(low.getkB()*ladder[k]);
+		double betaHigh = 1.0/(high.getkB()*ladder[k + 1]);
+		double delta = (betaLow - betaHigh)*(low.getEnergy() - high.getEnergy());
+
+		swapAttempts[k]++;
+
+		if(delta >= 0 || rand.nextDouble() < Math.exp(delta)){
+			swapAccepts[k]++;
+			low.setT(ladder[k + 1]);
+			high.setT(ladder[k]);
+			int tmp = replicaAtRung[k];
+			replicaAtRung[k] = replicaAtRung[k + 1];
+			replicaAtRung[k + 1] = tmp;
+		}
+	}
+
+	//fraction of accepted swaps between rung k and k+1.
+	public double[] getAcceptanceRates(){
+
+		double[] rates = new double[swapAttempts.length];
+		for(int k = 0; k < rates.length; k++){
+			rates[k] = (swapAttempts[k] == 0) ? 0.0 : swapAccepts[k]/(double)swapAttempts[k];
+		}
+		return rates;
+	}
+
+	public void shutdown(){
+		pool.shutdown();
+	}
+}
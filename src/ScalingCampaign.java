@@ -0,0 +1,266 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+
+//finite size scaling over a grid of system sizes and temperatures in one run. each size's temperatures are cut into
+//segments of segmentLength neighbouring temperatures, and a segment is one job: a single lattice is equilibrated at
+//its lowest temperature and then carried up through the rest, so every later temperature starts from the
+//configuration of the one below and only needs a short re-equilibration. each size is a TemperatureSweep, whose
+//runSegment does the sampling, so a point is equilibrated and sampled exactly as in a sweep.
+//the jobs go to a work stealing pool, largest size first, so the long jobs are started early and the small ones fill
+//the gaps at the end. every job gets its own generator, split in the same order whatever the number of threads.
+//from the results it gives the binder cumulant crossings of neighbouring sizes, and chi*L^(-gamma/nu) against
+//(T - Tc)*L^(1/nu) with the exact 2d ising exponents, which collapse onto one curve near Tc.
+public class ScalingCampaign {
+
+	//onsager's critical temperature for J = kB = 1, and the 2d ising exponents.
+	public static final double ONSAGER_TC = 2.0/Math.log(1.0 + Math.sqrt(2.0));
+	public static final double GAMMA_OVER_NU = 7.0/4.0;
+	public static final double NU = 1.0;
+
+	private final int[] sizes;
+	private final String dynamicsChoice;
+	private Boundary boundary = Boundary.PERIODIC;
+	private final double[] temperatures;
+	private final int nDatums;
+	private final TemperatureSweep[] sweeps;
+
+	private int segmentLength = 4;
+	private int equibSweeps = 100;
+	private int reequibSweeps = 25;
+	private int thinningSweeps = 16;
+	private int nSamples = 512;
+	private boolean adaptiveSampling = false;
+	private long seed = System.nanoTime();
+	private String generator = "splitmix";
+	private int nThreads = Runtime.getRuntime().availableProcessors();
+
+	//one sweep per size, in ascending order of size, all over the same temperatures.
+	public ScalingCampaign(int[] sizes, String dynamicsChoice, double startT, double finalT, int nDatums){
+
+		this.sizes = sizes.clone();
+		Arrays.sort(this.sizes);
+		this.dynamicsChoice = dynamicsChoice;
+		this.nDatums = nDatums;
+
+		this.sweeps = new TemperatureSweep[this.sizes.length];
+		for(int s = 0; s < sweeps.length; s++){
+			sweeps[s] = new TemperatureSweep(this.sizes[s], dynamicsChoice, startT, finalT, nDatums);
+		}
+		this.temperatures = sweeps.length > 0 ? sweeps[0].getTemperatures() : new double[0];
+	}
+
+	//number of neighbouring temperatures run one after another on the same lattice.
+	public void setSegmentLength(int segmentLength){
+		this.segmentLength = Math.max(1, segmentLength);
+	}
+	//in sweeps of n*n updates: equilibration at the start of a segment, re-equilibration after each step up in
+	//temperature, and the gap between samples. with adaptive sampling they set the caps, as in TemperatureSweep.
+	public void setSweeps(int equibSweeps, int reequibSweeps, int thinningSweeps){
+		this.equibSweeps = equibSweeps;
+		this.reequibSweeps = reequibSweeps;
+		this.thinningSweeps = thinningSweeps;
+	}
+	public void setNSamples(int nSamples){
+		this.nSamples = nSamples;
+	}
+	public void setAdaptiveSampling(boolean adaptiveSampling){
+		this.adaptiveSampling = adaptiveSampling;
+	}
+	public void setBoundary(Boundary boundary){
+		this.boundary = boundary;
+	}
+	public void setSeed(long seed){
+		this.seed = seed;
+	}
+	//the kind of generator, see LatticeRandom.create, that the master seed drives. splitmix by default.
+	public void setGenerator(String kind){
+		LatticeRandom.create(kind, 0L);
+		this.generator = kind;
+	}
+	public void setNThreads(int nThreads){
+		this.nThreads = nThreads;
+	}
+
+	public int[] getSizes(){
+		return sizes;
+	}
+	public double[] getTemperatures(){
+		return temperatures;
+	}
+	//results of the s-th smallest size.
+	public double[] getSusceptibilities(int s){
+		return sweeps[s].getSusceptibilities();
+	}
+	public double[] getSusceptibilityErrors(int s){
+		return sweeps[s].getSusceptibilityErrors();
+	}
+	public double[] getCapacities(int s){
+		return sweeps[s].getCapacities();
+	}
+	public double[] getCapacityErrors(int s){
+		return sweeps[s].getCapacityErrors();
+	}
+	public double[] getBinderCumulants(int s){
+		return sweeps[s].getBinderCumulants();
+	}
+	public ObservableAccumulator getObservables(int s, int d){
+		return sweeps[s].getObservables(d);
+	}
+	//sweeps of equilibration and between samples used at each temperature of size s.
+	public int[] getEquilibrationSweeps(int s){
+		return sweeps[s].getEquilibrationSweeps();
+	}
+	public int[] getThinningSweeps(int s){
+		return sweeps[s].getThinningSweeps();
+	}
+
+	//runs the whole grid and blocks until it's done. progress is called with the number of finished (size,
+	//temperature) points minus one, out of sizes*temperatures.
+	public void run(IntConsumer progress){
+
+		LatticeRandom master = LatticeRandom.create(generator, seed);
+		ForkJoinPool pool = new ForkJoinPool(nThreads);
+		List<ForkJoinTask<?>> jobs = new ArrayList<ForkJoinTask<?>>();
+		AtomicInteger finished = new AtomicInteger();
+
+		for(int s = 0; s < sizes.length; s++){
+			long sweep = (long)sizes[s]*sizes[s];
+			TemperatureSweep sizeSweep = sweeps[s];
+			sizeSweep.setThresholds(equibSweeps*sweep, thinningSweeps*sweep);
+			sizeSweep.setReequilibration(reequibSweeps*sweep);
+			sizeSweep.setNSamples(nSamples);
+			sizeSweep.setAdaptiveSampling(adaptiveSampling);
+			sizeSweep.setBoundary(boundary);
+		}
+
+		//externally submitted tasks are taken in submission order, so submitting the big sizes first starts them first.
+		for(int s = sizes.length - 1; s >= 0; s--){
+			for(int first = 0; first < nDatums; first += segmentLength){
+
+				TemperatureSweep sizeSweep = sweeps[s];
+				int from = first, to = Math.min(first + segmentLength, nDatums);
+				long startSeed = master.nextLong();
+				LatticeRandom segmentRand = master.split();
+
+				jobs.add(pool.submit(() -> sizeSweep.runSegment(from, to, startSeed, segmentRand, () -> progress.accept(finished.getAndIncrement()))));
+			}
+		}
+
+		try{
+			for(ForkJoinTask<?> job : jobs){
+				job.get();
+			}
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("scaling campaign interrupted", e);
+		}catch(ExecutionException e){
+			throw new IllegalStateException("scaling campaign failed", e.getCause());
+		}finally{
+			pool.shutdownNow();
+		}
+	}
+
+	//temperature at which the binder cumulants of sizes s and s+1 cross, by linear interpolation between the two
+	//grid temperatures where their difference changes sign. noise can make them cross more than once away from Tc,
+	//so the crossing nearest ONSAGER_TC is taken. NaN if they never cross.
+	public double binderCrossing(int s){
+
+		double[] small = getBinderCumulants(s), large = getBinderCumulants(s + 1);
+		double best = Double.NaN;
+
+		for(int d = 0; d < nDatums - 1; d++){
+
+			double before = large[d] - small[d];
+			double after = large[d + 1] - small[d + 1];
+			if(before*after > 0.0 || before == after) continue;
+
+			double T = temperatures[d] + (temperatures[d + 1] - temperatures[d])*before/(before - after);
+			if(Double.isNaN(best) || Math.abs(T - ONSAGER_TC) < Math.abs(best - ONSAGER_TC)) best = T;
+		}
+		return best;
+	}
+
+	//(T - Tc)*L^(1/nu) for size s.
+	public double[] getScaledTemperatures(int s){
+		double[] scaled = new double[nDatums];
+		for(int d = 0; d < nDatums; d++){
+			scaled[d] = (temperatures[d] - ONSAGER_TC)*Math.pow(sizes[s], 1.0/NU);
+		}
+		return scaled;
+	}
+
+	//chi*L^(-gamma/nu) for size s, with its errors scaled the same way.
+	public double[] getScaledSusceptibilities(int s){
+		return scale(getSusceptibilities(s), Math.pow(sizes[s], -GAMMA_OVER_NU));
+	}
+	public double[] getScaledSusceptibilityErrors(int s){
+		return scale(getSusceptibilityErrors(s), Math.pow(sizes[s], -GAMMA_OVER_NU));
+	}
+
+	private static double[] scale(double[] values, double factor){
+		double[] scaled = new double[values.length];
+		for(int i = 0; i < values.length; i++){
+			scaled[i] = values[i]*factor;
+		}
+		return scaled;
+	}
+
+	//writes into dir:
+	//results_L<n>.txt: "T, chi, chi error, C, C error, binder cumulant" for each size,
+	//scaled_L<n>.txt: "(T - Tc)L^(1/nu), chi*L^(-gamma/nu), error" for each size,
+	//binder.txt: "T, U" with one U column per size, smallest first,
+	//crossings.txt: "L1, L2, T" for each pair of neighbouring sizes.
+	public void writeResults(Path dir) throws IOException{
+
+		Files.createDirectories(dir);
+
+		for(int s = 0; s < sizes.length; s++){
+
+			TemperatureSweep sweep = sweeps[s];
+			try(BufferedWriter bw = Files.newBufferedWriter(dir.resolve("results_L" + sizes[s] + ".txt"))){
+				for(int d = 0; d < nDatums; d++){
+					bw.write(temperatures[d] + ", " + sweep.getSusceptibilities()[d] + ", " + sweep.getSusceptibilityErrors()[d] + ", "
+							+ sweep.getCapacities()[d] + ", " + sweep.getCapacityErrors()[d] + ", " + sweep.getBinderCumulants()[d]);
+					bw.newLine();
+				}
+			}
+
+			double[] x = getScaledTemperatures(s), y = getScaledSusceptibilities(s), errors = getScaledSusceptibilityErrors(s);
+			try(BufferedWriter bw = Files.newBufferedWriter(dir.resolve("scaled_L" + sizes[s] + ".txt"))){
+				for(int d = 0; d < nDatums; d++){
+					bw.write(x[d] + ", " + y[d] + ", " + errors[d]);
+					bw.newLine();
+				}
+			}
+		}
+
+		try(BufferedWriter bw = Files.newBufferedWriter(dir.resolve("binder.txt"))){
+			for(int d = 0; d < nDatums; d++){
+				StringBuilder line = new StringBuilder().append(temperatures[d]);
+				for(int s = 0; s < sizes.length; s++){
+					line.append(", ").append(getBinderCumulants(s)[d]);
+				}
+				bw.write(line.toString());
+				bw.newLine();
+			}
+		}
+
+		try(BufferedWriter bw = Files.newBufferedWriter(dir.resolve("crossings.txt"))){
+			for(int s = 0; s < sizes.length - 1; s++){
+				bw.write(sizes[s] + ", " + sizes[s + 1] + ", " + binderCrossing(s));
+				bw.newLine();
+			}
+		}
+	}
+}
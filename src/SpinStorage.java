@@ -0,0 +1,43 @@
+//storage layer behind the Lattice class. spins are held as +1 or -1 and are indexed row-major by (i, j)
+//on an n x n grid. implementations are free to pack the spins however they like.
+public interface SpinStorage {
+
+	public int getN();
+
+	public int get(int i, int j);
+
+	public void set(int i, int j, int state);
+
+	public void flip(int i, int j);
+
+	//approximate number of bytes of heap used to hold the spins.
+	public long memoryFootprint();
+
+	//copies row i into row[offset] to row[offset + n - 1] as +1 or -1 bytes.
+	public default void copyRow(int i, byte[] row, int offset){
+		int n = getN();
+		for(int j = 0; j < n; j++){
+			row[offset + j] = (byte)get(i, j);
+		}
+	}
+
+	//sets every spin to state, without going through a LatticePoint grid.
+	public default void fill(int state){
+		int n = getN();
+		for(int i = 0; i < n; i++){
+			for(int j = 0; j < n; j++){
+				set(i, j, state);
+			}
+		}
+	}
+
+	//sets every spin up or down at random.
+	public default void fillRandom(LatticeRandom rand){
+		int n = getN();
+		for(int i = 0; i < n; i++){
+			for(int j = 0; j < n; j++){
+				set(i, j, rand.nextBoolean() ? 1 : -1);
+			}
+		}
+	}
+}
@@ -0,0 +1,479 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.function.IntConsumer;
+
+
+//runs a sweep over nDatums temperatures with one independent lattice per temperature, spread over a thread pool.
+//every replica gets its own generator, split in temperature order from the master seed, so a run is repeatable
+//whatever the number of threads. the results land in arrays indexed like the temperatures, ready for
+//Toolbox.writeResultsToFile. the observables come from an ObservableAccumulator, the sample arrays are only
+//kept for the bootstrap errors.
+//with a checkpoint file set, the state of the run is saved every so often (see Checkpoint) and a run started with
+//the same file and the same parameters carries on from it: finished temperatures are skipped and running ones
+//continue from their last saved sample with the same random numbers, those of the parallel, multispin and cluster
+//engines included. that needs a generator whose state can be saved, so not "jdk". checkpoints are only taken
+//between samples, not during equilibration. the file is deleted once the whole sweep has finished.
+//unlike the old serial annealing each replica starts from scratch: all spins up, or random spins for kawasaki
+//dynamics since those conserve the magnetisation, and is equilibrated for equibThreshold updates.
+public class TemperatureSweep {
+
+	private final int systemSize;
+	private final String dynamicsChoice;
+	private Boundary boundary = Boundary.PERIODIC;
+	private final double startT, finalT;
+	private final int nDatums;
+	private final double[] temperatures;
+
+	private long equibThreshold;
+	private long postEquibThreshold;
+	private long reequibThreshold;
+	private int nSamples = 512;
+	private long seed = System.nanoTime();
+	private String generator = "splitmix";
+	private int nThreads = Runtime.getRuntime().availableProcessors();
+
+	//with adaptive sampling each temperature is equilibrated and thinned by an AutocorrelationAnalyser, and the
+	//thresholds only set the caps: at most ADAPTIVE_CAP times the sweeps of equilibration, and of thinning, that the
+	//fixed thresholds give. the analyser can then stretch both near Tc, where tau_int outgrows the fixed thinning,
+	//as well as shorten them away from it.
+	static final int ADAPTIVE_CAP = 10;
+	private boolean adaptiveSampling = false;
+	private final int[] equibSweeps;
+	private final int[] thinningSweeps;
+
+	private Path checkpointFile;
+	private long checkpointMillis;
+	private final Object checkpointLock = new Object();
+	private boolean[] done;
+	private final Map<Integer, Checkpoint.ReplicaState> runningStates = new HashMap<Integer, Checkpoint.ReplicaState>();
+	private volatile long lastCheckpoint;
+
+	private Path seriesFile;
+	private ObservableWriter seriesWriter;
+
+	private final double[] susceptibilities, suscepErrors;
+	private final double[] capacities, capacErrors;
+	private final double[] binderCumulants;
+	private final ObservableAccumulator[] observables;
+
+	public TemperatureSweep(int systemSize, String dynamicsChoice, double startT, double finalT, int nDatums){
+
+		this.systemSize = systemSize;
+		this.dynamicsChoice = dynamicsChoice;
+		this.startT = startT;
+		this.finalT = finalT;
+		this.nDatums = nDatums;
+		this.equibThreshold = 100L*systemSize*systemSize;
+		this.postEquibThreshold = 16L*systemSize*systemSize;
+		this.reequibThreshold = 25L*systemSize*systemSize;
+
+		//the temperatures are stepped exactly as the serial graphs did, so the output is the same to the last digit.
+		this.temperatures = new double[nDatums];
+		double T = startT;
+		double increment = (finalT-startT)/(double)nDatums;
+		for(int d = 0; d < nDatums; d++){
+			temperatures[d] = T;
+			T+=increment;
+		}
+
+		this.susceptibilities = new double[nDatums];
+		this.suscepErrors = new double[nDatums];
+		this.capacities = new double[nDatums];
+		this.capacErrors = new double[nDatums];
+		this.binderCumulants = new double[nDatums];
+		this.observables = new ObservableAccumulator[nDatums];
+		this.equibSweeps = new int[nDatums];
+		this.thinningSweeps = new int[nDatums];
+	}
+
+	//in updates, so long: a hundred sweeps of an 8192 x 8192 lattice don't fit in an int.
+	public void setThresholds(long equibThreshold, long postEquibThreshold){
+		this.equibThreshold = equibThreshold;
+		this.postEquibThreshold = postEquibThreshold;
+	}
+	//equilibration of every temperature but the first of a segment, see runSegment.
+	void setReequilibration(long reequibThreshold){
+		this.reequibThreshold = reequibThreshold;
+	}
+	public void setNSamples(int nSamples){
+		this.nSamples = nSamples;
+	}
+	public void setSeed(long seed){
+		this.seed = seed;
+	}
+	//the kind of generator, see LatticeRandom.create, that the master seed drives. splitmix by default.
+	public void setGenerator(String kind){
+		LatticeRandom.create(kind, 0L);
+		this.generator = kind;
+		checkCheckpointable();
+	}
+	public void setNThreads(int nThreads){
+		this.nThreads = nThreads;
+	}
+	public void setAdaptiveSampling(boolean adaptiveSampling){
+		this.adaptiveSampling = adaptiveSampling;
+	}
+	public void setBoundary(Boundary boundary){
+		this.boundary = boundary;
+	}
+	//streams every sample of every temperature to an ObservableWriter file. every checkpoint flushes it, and a
+	//resumed run cuts it back to the samples that checkpoint covers before carrying on, so it holds every sample of
+	//the run once however often it was stopped. a run that can't open the file goes ahead without it.
+	public void setSeriesOutput(Path file){
+		this.seriesFile = file;
+	}
+	//saves the run to file at most every intervalMillis, and resumes from it if it already exists.
+	public void setCheckpoint(Path file, long intervalMillis){
+		this.checkpointFile = file;
+		this.checkpointMillis = intervalMillis;
+		checkCheckpointable();
+	}
+
+	//fails straight away, rather than at the first checkpoint, if the run can't be checkpointed.
+	private void checkCheckpointable(){
+		if(checkpointFile != null && !LatticeRandom.create(generator, 0L).canSaveState()){
+			throw new IllegalArgumentException("a run using the " + generator + " generator can't be checkpointed");
+		}
+	}
+
+	public double[] getTemperatures(){
+		return temperatures;
+	}
+	public double[] getSusceptibilities(){
+		return susceptibilities;
+	}
+	public double[] getSusceptibilityErrors(){
+		return suscepErrors;
+	}
+	public double[] getCapacities(){
+		return capacities;
+	}
+	public double[] getCapacityErrors(){
+		return capacErrors;
+	}
+	public double[] getBinderCumulants(){
+		return binderCumulants;
+	}
+	//sweeps of equilibration and sweeps between samples used at each temperature.
+	public int[] getEquilibrationSweeps(){
+		return equibSweeps;
+	}
+	public int[] getThinningSweeps(){
+		return thinningSweeps;
+	}
+	//the accumulated observables of temperature d.
+	public ObservableAccumulator getObservables(int d){
+		return observables[d];
+	}
+
+	//runs every temperature and blocks until they are all done. progress is called with the number of finished
+	//temperatures minus one, the same count LoadingFrame.updateLoadingBar expects. it is always called from the
+	//thread that called run, in increasing order, as temperatures finish.
+	public void run(IntConsumer progress){
+
+		done = new boolean[nDatums];
+		Map<Integer, Checkpoint.ReplicaState> resumed = new HashMap<Integer, Checkpoint.ReplicaState>();
+		boolean resuming = checkpointFile != null && Files.exists(checkpointFile);
+		if(resuming) resumed = resume();
+		if(seriesFile != null) seriesWriter = openSeries(resuming, resumed);
+		lastCheckpoint = System.currentTimeMillis();
+
+		LatticeRandom master = LatticeRandom.create(generator, seed);
+		ExecutorService pool = Executors.newFixedThreadPool(nThreads);
+		CompletionService<Void> completion = new ExecutorCompletionService<Void>(pool);
+		int submitted = 0, finished = 0;
+
+		for(int d = 0; d < nDatums; d++){
+
+			int datum = d;
+			long startSeed = master.nextLong();
+			LatticeRandom replicaRand = master.split();
+			Checkpoint.ReplicaState state = resumed.get(d);
+
+			if(done[d]){
+				progress.accept(finished++);
+				continue;
+			}
+
+			completion.submit(() -> {
+				if(state == null) runSegment(datum, datum + 1, startSeed, replicaRand, null);
+				else resumeReplica(state);
+				return null;
+			});
+			submitted++;
+		}
+
+		try{
+			for(int i = 0; i < submitted; i++){
+				completion.take().get();
+				progress.accept(finished++);
+			}
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("temperature sweep interrupted", e);
+		}catch(ExecutionException e){
+			throw new IllegalStateException("temperature sweep failed", e.getCause());
+		}finally{
+			//a failed run stops its workers before returning, so none is left writing the checkpoint or the series.
+			pool.shutdownNow();
+			awaitWorkers(pool);
+			closeSeries();
+		}
+
+		if(checkpointFile != null){
+			try{
+				Files.deleteIfExists(checkpointFile);
+			}catch(IOException e){
+				System.err.println("could not delete checkpoint " + checkpointFile + ": " + e);
+			}
+		}
+	}
+
+	//waits for the workers of a shut down pool to finish. an interrupt while waiting is kept for the caller.
+	private static void awaitWorkers(ExecutorService pool){
+		try{
+			pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+		}catch(InterruptedException e){
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	//opens the series file, afresh or, when resuming, cut back to the samples the checkpoint covers: all of them for
+	//finished temperatures and those up to the saved state for running ones.
+	private ObservableWriter openSeries(boolean resuming, Map<Integer, Checkpoint.ReplicaState> resumed){
+
+		try{
+			if(resuming && Files.exists(seriesFile)){
+				Map<Double, Integer> samplesKept = new HashMap<Double, Integer>();
+				for(int d = 0; d < nDatums; d++){
+					int kept = done[d] ? nSamples : resumed.containsKey(d) ? resumed.get(d).samplesDone : 0;
+					samplesKept.merge(temperatures[d], kept, Integer::sum);
+				}
+				ObservableWriter.keepFirst(seriesFile, samplesKept);
+			}
+			return new ObservableWriter(seriesFile, resuming);
+		}catch(IOException e){
+			System.err.println("could not open " + seriesFile + ", samples won't be saved: " + e);
+			return null;
+		}
+	}
+
+	private void closeSeries(){
+
+		if(seriesWriter == null) return;
+		try{
+			seriesWriter.close();
+		}catch(IOException e){
+			System.err.println("could not write " + seriesFile + ": " + e);
+		}
+		seriesWriter = null;
+	}
+
+	//runs temperatures from up to to on one lattice, in increasing order, calling pointDone, if not null, after each.
+	//the lattice is equilibrated for equibThreshold updates at the first, and every later temperature starts from the
+	//configuration of the one before so only gets reequibThreshold. a run is a segment of one temperature at a time,
+	//ScalingCampaign carries a lattice through several.
+	void runSegment(int from, int to, long startSeed, LatticeRandom rand, Runnable pointDone){
+
+		boolean conserved = dynamicsChoice.equals("k") || dynamicsChoice.equals("l") || dynamicsChoice.equals("p");
+		LatticePoint[][] start = conserved ? LatticePoint.randLatticeArray(systemSize, startSeed) : LatticePoint.allPointsUp(systemSize);
+		Lattice lattice = new Lattice(start, temperatures[from]);
+		lattice.setBoundary(boundary);
+		lattice.setRandom(rand);
+
+		for(int d = from; d < to; d++){
+
+			lattice.setT(temperatures[d]);
+			long sampleInterval = equilibrate(d, lattice, d == from ? equibThreshold : reequibThreshold);
+			sample(d, lattice, sampleInterval, 0, new double[nSamples], new double[nSamples], new ObservableAccumulator());
+			if(pointDone != null) pointDone.run();
+		}
+	}
+
+	//equilibrates the lattice at temperature d for threshold updates and returns the updates between samples. with
+	//adaptive sampling threshold and postEquibThreshold only set the caps, see ADAPTIVE_CAP.
+	private long equilibrate(int d, Lattice lattice, long threshold){
+
+		int sweep = systemSize*systemSize;
+
+		if(adaptiveSampling){
+			//in whole sweeps first, so the caps can't overflow on a big lattice.
+			int maxEquib = ADAPTIVE_CAP*(int)(threshold/sweep);
+			int maxThinning = ADAPTIVE_CAP*(int)Math.max(1, postEquibThreshold/sweep);
+			AutocorrelationAnalyser analyser = new AutocorrelationAnalyser(32, maxEquib, maxThinning);
+			equibSweeps[d] = analyser.equilibrate(lattice, dynamicsChoice);
+			thinningSweeps[d] = analyser.getThinningSweeps();
+			return (long)thinningSweeps[d]*sweep;
+		}
+
+		advance(lattice, threshold);
+		equibSweeps[d] = (int)(threshold/sweep);
+		thinningSweeps[d] = (int)(postEquibThreshold/sweep);
+		return postEquibThreshold;
+	}
+
+	//Lattice.dynamicsRepeated takes an int, so longer runs are done at most a sweep at a time. a worker of a run that
+	//has failed is interrupted, and stops here at the end of the sweep.
+	private void advance(Lattice lattice, long updates){
+
+		int sweep = systemSize*systemSize;
+		while(updates > 0){
+			if(Thread.currentThread().isInterrupted()) throw new IllegalStateException("temperature sweep interrupted");
+			int chunk = (int)Math.min(updates, sweep);
+			lattice.dynamicsRepeated(chunk, dynamicsChoice);
+			updates -= chunk;
+		}
+	}
+
+	//carries on a temperature from its checkpointed state.
+	private void resumeReplica(Checkpoint.ReplicaState state){
+
+		Lattice lattice = state.lattice.restore();
+		ObservableAccumulator acc = new ObservableAccumulator();
+
+		for(int i = 0; i < state.samplesDone; i++){
+			acc.add(state.energies[i], state.magnetisms[i]);
+		}
+		sample(state.datum, lattice, state.sampleInterval, state.samplesDone, state.magnetisms, state.energies, acc);
+	}
+
+	//takes samples from the first one not yet done up to nSamples, then works out the results for temperature d.
+	private void sample(int d, Lattice lattice, long sampleInterval, int firstSample, double[] magnetisms, double[] energies,
+			ObservableAccumulator acc){
+
+		double T = temperatures[d];
+		LatticeRandom replicaRand = lattice.getRandom();
+
+		for(int i = firstSample; i < nSamples; i++){
+			advance(lattice, sampleInterval);
+			magnetisms[i] = lattice.getMagnetisation();
+			energies[i] = lattice.getEnergy();
+			lattice.recordObservables(acc);
+			if(seriesWriter != null) seriesWriter.record(T, energies[i], magnetisms[i]);
+
+			if(checkpointFile != null && System.currentTimeMillis() - lastCheckpoint >= checkpointMillis){
+				saveRunning(d, lattice, sampleInterval, i + 1, magnetisms, energies);
+			}
+		}
+
+		observables[d] = acc;
+		susceptibilities[d] = acc.getSusceptibility(T, systemSize);
+		suscepErrors[d] = Lattice.suscepBootstrap(magnetisms, T, systemSize, Bootstrap.DEFAULT_RESAMPLES, replicaRand.split());
+		capacities[d] = acc.getHeatCapacity(T);
+		binderCumulants[d] = acc.getBinderCumulant();
+		capacErrors[d] = Lattice.capacBootstrap(energies, T, Bootstrap.DEFAULT_RESAMPLES, replicaRand.split());
+
+		if(checkpointFile != null){
+			synchronized(checkpointLock){
+				done[d] = true;
+				runningStates.remove(d);
+				writeCheckpoint();
+			}
+		}
+	}
+
+	//snapshots a running temperature and writes the checkpoint. called from the thread running that temperature.
+	private void saveRunning(int d, Lattice lattice, long sampleInterval, int samplesDone, double[] magnetisms, double[] energies){
+
+		Checkpoint.ReplicaState state = new Checkpoint.ReplicaState();
+		state.datum = d;
+		state.samplesDone = samplesDone;
+		state.sampleInterval = sampleInterval;
+		state.magnetisms = magnetisms.clone();
+		state.energies = energies.clone();
+		state.lattice = Checkpoint.LatticeState.capture(lattice);
+
+		synchronized(checkpointLock){
+			runningStates.put(d, state);
+			writeCheckpoint();
+		}
+	}
+
+	//writes everything known so far. must hold checkpointLock.
+	private void writeCheckpoint(){
+
+		Checkpoint checkpoint = new Checkpoint();
+		checkpoint.seed = seed;
+		checkpoint.systemSize = systemSize;
+		checkpoint.dynamicsChoice = dynamicsChoice;
+		checkpoint.boundary = boundary;
+		checkpoint.generator = generator;
+		checkpoint.startT = startT;
+		checkpoint.finalT = finalT;
+		checkpoint.equibThreshold = equibThreshold;
+		checkpoint.postEquibThreshold = postEquibThreshold;
+		checkpoint.adaptiveSampling = adaptiveSampling;
+		checkpoint.nSamples = nSamples;
+		checkpoint.done = done;
+		checkpoint.susceptibilities = susceptibilities;
+		checkpoint.suscepErrors = suscepErrors;
+		checkpoint.capacities = capacities;
+		checkpoint.capacErrors = capacErrors;
+		checkpoint.binderCumulants = binderCumulants;
+		checkpoint.equibSweeps = equibSweeps;
+		checkpoint.thinningSweeps = thinningSweeps;
+		checkpoint.running.addAll(runningStates.values());
+
+		try{
+			//every sample the checkpoint covers must be on disk before it is, see setSeriesOutput.
+			if(seriesWriter != null) seriesWriter.flush();
+			Checkpoint.write(checkpoint, checkpointFile);
+		}catch(IOException e){
+			System.err.println("could not write checkpoint " + checkpointFile + ": " + e);
+		}
+		lastCheckpoint = System.currentTimeMillis();
+	}
+
+	//loads the checkpoint file, takes over its seed and finished results and returns the temperatures still running.
+	private Map<Integer, Checkpoint.ReplicaState> resume(){
+
+		Checkpoint checkpoint;
+		try{
+			checkpoint = Checkpoint.read(checkpointFile);
+		}catch(IOException e){
+			throw new IllegalStateException("could not read checkpoint " + checkpointFile, e);
+		}
+
+		if(checkpoint.systemSize != systemSize || checkpoint.done.length != nDatums || checkpoint.nSamples != nSamples
+				|| !checkpoint.dynamicsChoice.equals(dynamicsChoice) || checkpoint.boundary != boundary){
+			throw new IllegalStateException("checkpoint " + checkpointFile + " belongs to a different run");
+		}
+		if(!checkpoint.generator.equals(generator) || checkpoint.startT != startT || checkpoint.finalT != finalT
+				|| checkpoint.equibThreshold != equibThreshold || checkpoint.postEquibThreshold != postEquibThreshold
+				|| checkpoint.adaptiveSampling != adaptiveSampling){
+			throw new IllegalStateException("checkpoint " + checkpointFile + " was made with different temperatures,"
+					+ " thresholds, sampling or generator");
+		}
+
+		seed = checkpoint.seed;
+		for(int d = 0; d < nDatums; d++){
+			if(!checkpoint.done[d]) continue;
+			done[d] = true;
+			susceptibilities[d] = checkpoint.susceptibilities[d];
+			suscepErrors[d] = checkpoint.suscepErrors[d];
+			capacities[d] = checkpoint.capacities[d];
+			capacErrors[d] = checkpoint.capacErrors[d];
+			binderCumulants[d] = checkpoint.binderCumulants[d];
+			equibSweeps[d] = checkpoint.equibSweeps[d];
+			thinningSweeps[d] = checkpoint.thinningSweeps[d];
+		}
+
+		Map<Integer, Checkpoint.ReplicaState> resumed = new HashMap<Integer, Checkpoint.ReplicaState>();
+		for(Checkpoint.ReplicaState state : checkpoint.running){
+			resumed.put(state.datum, state);
+			runningStates.put(state.datum, state);
+			equibSweeps[state.datum] = checkpoint.equibSweeps[state.datum];
+			thinningSweeps[state.datum] = checkpoint.thinningSweeps[state.datum];
+		}
+		return resumed;
+	}
+}
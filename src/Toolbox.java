@@ -108,5 +108,35 @@ public class Toolbox {
 		
 		return runningTotal/(double)n;
 	}
+	
+	
+	//integrated autocorrelation time of a time series, tau = 1/2 + sum of the normalised autocorrelations rho(t).
+	//the sum is cut off with sokal's automatic window, at the first W with W >= 6*tau(W).
+	public static double integratedAutocorrelationTime(double[] series){
+		
+		int n = series.length;
+		double mean = avgArrayValue(series);
+		double c0 = 0.0;
+		
+		for(int i = 0; i < n; i++){
+			c0 += (series[i] - mean)*(series[i] - mean);
+		}
+		c0 /= n;
+		if(c0 == 0.0) return 0.5;
+		
+		double tau = 0.5;
+		
+		for(int t = 1; t < n; t++){
+			
+			double ct = 0.0;
+			for(int i = 0; i < n - t; i++){
+				ct += (series[i] - mean)*(series[i + t] - mean);
+			}
+			tau += ct/((n - t)*c0);
+			
+			if(t >= 6*tau) break;
+		}
+		return tau;
+	}
 }
 
@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+
+import org.junit.jupiter.api.Test;
+
+
+class BootstrapTest {
+
+	//the resamples are spread over whatever pool the parallel stream runs in, and the error must come out the same
+	//to the last digit however many threads that pool has.
+	@Test
+	void errorDoesNotDependOnTheNumberOfThreads() throws InterruptedException, ExecutionException{
+
+		double[] samples = series(2000, 3L);
+		double serial = inPool(1, samples);
+
+		for(int threads : new int[]{2, 4, 7}){
+			assertEquals(serial, inPool(threads, samples), 0.0, threads + " threads");
+		}
+		assertEquals(serial, Bootstrap.varianceError(samples, 0.5, 300, new LatticeRandom.SplitMix(11L)), 0.0, "common pool");
+	}
+
+	//the old suscepBootstrap copied every resample into an array and took its susceptibility. drawing the same
+	//indices, from the same split streams, has to give the same error without the copies.
+	@Test
+	void agreesWithCopyingEveryResample(){
+
+		int systemSize = 16, nResamples = 256;
+		double T = 2.27;
+		double[] magnetisms = series(1000, 5L);
+
+		LatticeRandom master = new LatticeRandom.SplitMix(13L);
+		double[] susceps = new double[nResamples];
+		susceps[0] = Lattice.susceptibility(magnetisms, T, systemSize);
+		for(int r = 1; r < nResamples; r++){
+			LatticeRandom rand = master.split();
+			double[] resample = new double[magnetisms.length];
+			for(int j = 0; j < resample.length; j++){
+				resample[j] = magnetisms[rand.nextInt(magnetisms.length)];
+			}
+			susceps[r] = Lattice.susceptibility(resample, T, systemSize);
+		}
+
+		double chiBar = 0.0, chiSqBar = 0.0;
+		for(double chi : susceps){
+			chiBar += chi/nResamples;
+			chiSqBar += chi*chi/nResamples;
+		}
+		double copied = Math.sqrt(chiSqBar - chiBar*chiBar);
+
+		double error = Lattice.suscepBootstrap(magnetisms, T, systemSize, nResamples, new LatticeRandom.SplitMix(13L));
+		assertEquals(copied, error, 1e-6*copied);
+	}
+
+	private static double inPool(int threads, double[] samples) throws InterruptedException, ExecutionException{
+
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try{
+			return pool.submit(() -> Bootstrap.varianceError(samples, 0.5, 300, new LatticeRandom.SplitMix(11L))).get();
+		}finally{
+			pool.shutdown();
+		}
+	}
+
+	//correlated like a magnetisation series, around an offset.
+	private static double[] series(int n, long seed){
+
+		LatticeRandom rand = new LatticeRandom.SplitMix(seed);
+		double[] samples = new double[n];
+		double x = 0.0;
+		for(int i = 0; i < n; i++){
+			x = 0.9*x + (2.0*rand.nextDouble() - 1.0);
+			samples[i] = 100.0 + 20.0*x;
+		}
+		return samples;
+	}
+}
@@ -0,0 +1,47 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+
+
+class CheckerboardGlauberTest {
+
+	@Test
+	void keepsTheRunningTotals(){
+
+		for(int n : new int[]{2, 4, 6, 16, 32}){
+
+			Lattice lattice = Ensembles.randomLattice(n, 2.27, n);
+			lattice.dynamicsRepeated(20*n*n, "c");
+
+			lattice.verifyTotals();
+			assertEquals(20L*n*n, lattice.getMovesAttempted());
+		}
+	}
+
+	@Test
+	void oddSizesFallBackToSerialGlauber(){
+
+		Lattice lattice = Ensembles.randomLattice(5, 2.27, 1L);
+		assertFalse(CheckerboardGlauber.supports(lattice));
+
+		lattice.dynamicsRepeated(10*25, "c");
+		lattice.verifyTotals();
+		assertEquals(10L*25, lattice.getMovesAttempted());
+	}
+
+	@Test
+	void samplesTheSameDistributionAsSerialGlauber(){
+
+		for(double T : new double[]{2.0, 3.0}){
+
+			double[] serialE = Ensembles.means(16, r -> Ensembles.randomLattice(16, T, r), "g", 200, 200, 2, Lattice::getEnergy);
+			double[] checkerboardE = Ensembles.means(16, r -> Ensembles.randomLattice(16, T, 100 + r), "c", 200, 200, 2, Lattice::getEnergy);
+			Ensembles.assertAgree("<E> at T = " + T, serialE, checkerboardE);
+
+			double[] serialM = Ensembles.means(16, r -> Ensembles.randomLattice(16, T, 200 + r), "g", 200, 200, 2, l -> Math.abs(l.getMagnetisation()));
+			double[] checkerboardM = Ensembles.means(16, r -> Ensembles.randomLattice(16, T, 300 + r), "c", 200, 200, 2, l -> Math.abs(l.getMagnetisation()));
+			Ensembles.assertAgree("<|M|> at T = " + T, serialM, checkerboardM);
+		}
+	}
+}
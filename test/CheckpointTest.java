@@ -0,0 +1,174 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class CheckpointTest {
+
+	@TempDir
+	Path dir;
+
+	//a lattice written to a checkpoint and read back carries on exactly as the original does, whichever engines
+	//it has started.
+	@Test
+	void restoredLatticesRepeatTheOriginal() throws IOException{
+
+		for(String dynamics : new String[]{"g", "k", "c", "p", "m", "w", "s"}){
+
+			Lattice original = Ensembles.randomLattice(8, 2.27, 1L);
+			original.dynamicsRepeated(10*64, dynamics);
+
+			Checkpoint.LatticeState state = Checkpoint.LatticeState.capture(original);
+			Lattice restored = roundTrip(state).lattice.restore();
+
+			original.dynamicsRepeated(10*64, dynamics);
+			restored.dynamicsRepeated(10*64, dynamics);
+
+			assertEquals(original.getEnergy(), restored.getEnergy(), 0.0, dynamics);
+			assertEquals(original.getMagnetisation(), restored.getMagnetisation(), 0.0, dynamics);
+			for(int i = 0; i < 8; i++){
+				for(int j = 0; j < 8; j++){
+					assertEquals(original.getPointState(i, j), restored.getPointState(i, j), dynamics + " spin " + i + ", " + j);
+				}
+			}
+		}
+	}
+
+	//a sweep killed part way through and started again gives the same results, and the same sample series, as one
+	//left to run.
+	@Test
+	void resumedSweepsMatchUninterruptedOnes() throws IOException{
+
+		for(String dynamics : new String[]{"m", "w"}){
+
+			TemperatureSweep whole = sweep(dynamics, 3.0);
+			whole.setSeriesOutput(dir.resolve(dynamics + "_whole.obs"));
+			whole.run(d -> {});
+
+			Path file = dir.resolve(dynamics + ".ckpt");
+			Path series = dir.resolve(dynamics + ".obs");
+			killAfterFirstTemperature(dynamics, file, series);
+			assertTrue(Files.exists(file));
+
+			TemperatureSweep resumed = sweep(dynamics, 3.0);
+			resumed.setCheckpoint(file, 0);
+			resumed.setSeriesOutput(series);
+			resumed.run(d -> {});
+
+			for(double T : whole.getTemperatures()){
+				assertEquals(samplesAt(dir.resolve(dynamics + "_whole.obs"), T), samplesAt(series, T), dynamics + " series at T = " + T);
+			}
+
+			assertArrayEquals(whole.getSusceptibilities(), resumed.getSusceptibilities(), dynamics);
+			assertArrayEquals(whole.getCapacities(), resumed.getCapacities(), dynamics);
+			assertArrayEquals(whole.getSusceptibilityErrors(), resumed.getSusceptibilityErrors(), dynamics);
+			assertArrayEquals(whole.getBinderCumulants(), resumed.getBinderCumulants(), dynamics);
+			assertTrue(!Files.exists(file));
+		}
+	}
+
+	@Test
+	void refusesToResumeADifferentRun(){
+
+		Path file = dir.resolve("g.ckpt");
+		killAfterFirstTemperature("g", file, null);
+
+		TemperatureSweep otherTemperatures = sweep("g", 3.5);
+		otherTemperatures.setCheckpoint(file, 0);
+		assertThrows(IllegalStateException.class, () -> otherTemperatures.run(d -> {}));
+
+		TemperatureSweep otherThresholds = sweep("g", 3.0);
+		otherThresholds.setThresholds(20*64, 2*64);
+		otherThresholds.setCheckpoint(file, 0);
+		assertThrows(IllegalStateException.class, () -> otherThresholds.run(d -> {}));
+	}
+
+	//a file of another format version is refused outright, not read as far as it happens to match.
+	@Test
+	void refusesOtherFormatVersions() throws IOException{
+
+		roundTrip(Checkpoint.LatticeState.capture(Ensembles.randomLattice(8, 2.27, 1L)));
+		Path file = dir.resolve("lattice.ckpt");
+		byte[] bytes = Files.readAllBytes(file);
+		bytes[11]++;
+		Files.write(file, bytes);
+
+		assertThrows(IOException.class, () -> Checkpoint.read(file));
+	}
+
+	@Test
+	void refusesToCheckpointTheJdkGenerator(){
+
+		TemperatureSweep sweeper = sweep("g", 3.0);
+		sweeper.setGenerator("jdk");
+		assertThrows(IllegalArgumentException.class, () -> sweeper.setCheckpoint(dir.resolve("jdk.ckpt"), 0));
+
+		TemperatureSweep checkpointed = sweep("g", 3.0);
+		checkpointed.setCheckpoint(dir.resolve("jdk.ckpt"), 0);
+		assertThrows(IllegalArgumentException.class, () -> checkpointed.setGenerator("jdk"));
+	}
+
+	private static TemperatureSweep sweep(String dynamics, double finalT){
+
+		TemperatureSweep sweeper = new TemperatureSweep(8, dynamics, 2.0, finalT, 2);
+		sweeper.setThresholds(20*64, 64);
+		sweeper.setNSamples(200);
+		sweeper.setSeed(5L);
+		sweeper.setNThreads(2);
+		return sweeper;
+	}
+
+	//checkpoints after every sample and throws once the first temperature is done, while the other is still being
+	//sampled, which leaves the checkpoint behind as a kill would.
+	private static void killAfterFirstTemperature(String dynamics, Path file, Path series){
+
+		TemperatureSweep killed = sweep(dynamics, 3.0);
+		killed.setCheckpoint(file, 0);
+		if(series != null) killed.setSeriesOutput(series);
+		assertThrows(IllegalStateException.class, () -> killed.run(d -> {
+			throw new IllegalStateException("killed");
+		}));
+	}
+
+	//the rows of a series file at temperature T, in order.
+	private static List<String> samplesAt(Path series, double T) throws IOException{
+		List<String> rows = new ArrayList<String>();
+		for(String row : ObservableWriterTest.rows(series)){
+			if(row.startsWith(T + ",")) rows.add(row);
+		}
+		return rows;
+	}
+
+	private Checkpoint.ReplicaState roundTrip(Checkpoint.LatticeState state) throws IOException{
+
+		Checkpoint checkpoint = new Checkpoint();
+		checkpoint.systemSize = state.n;
+		checkpoint.dynamicsChoice = "g";
+		checkpoint.boundary = state.boundary;
+		checkpoint.generator = "splitmix";
+		checkpoint.nSamples = 1;
+		checkpoint.done = new boolean[1];
+		checkpoint.susceptibilities = checkpoint.suscepErrors = checkpoint.capacities = new double[1];
+		checkpoint.capacErrors = checkpoint.binderCumulants = new double[1];
+		checkpoint.equibSweeps = checkpoint.thinningSweeps = new int[1];
+
+		Checkpoint.ReplicaState replica = new Checkpoint.ReplicaState();
+		replica.magnetisms = replica.energies = new double[1];
+		replica.lattice = state;
+		checkpoint.running.add(replica);
+
+		Path file = dir.resolve("lattice.ckpt");
+		Checkpoint.write(checkpoint, file);
+		return Checkpoint.read(file).running.get(0);
+	}
+}
@@ -0,0 +1,85 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+class ClusterDynamicsTest {
+
+	@Test
+	void keepsTheRunningTotals(){
+
+		for(Boundary boundary : Boundary.values()){
+			for(int n : new int[]{2, 5, 16}){
+
+				Lattice lattice = Ensembles.randomLattice(n, 2.27, n);
+				lattice.setBoundary(boundary);
+				lattice.dynamicsRepeated(20*n*n, "w");
+				lattice.verifyTotals();
+				lattice.dynamicsRepeated(20*n*n, "s");
+				lattice.verifyTotals();
+			}
+		}
+	}
+
+	//at low temperature a wolff cluster covers nearly the whole lattice, so a fixed count of clusters sized from a
+	//bad guess of the mean would flip n*n times too many spins.
+	@Test
+	void flipsAboutTheRequestedNumberOfSpins(){
+
+		int n = 32;
+		Lattice lattice = Ensembles.randomLattice(n, 1.0, 1L);
+		ClusterDynamics cluster = new ClusterDynamics(lattice, new LatticeRandom.SplitMix(2L));
+
+		long first = cluster.wolffFlips(100*n*n);
+		assertTrue(first >= 100*n*n && first <= 101*n*n, "calibrating call flipped " + first);
+
+		for(int call = 0; call < 10; call++){
+			long flipped = cluster.wolffFlips(10*n*n);
+			assertTrue(flipped > 5*n*n && flipped < 20*n*n, "call " + call + " flipped " + flipped);
+		}
+
+		lattice.setT(4.0);
+		long afterChange = cluster.wolffFlips(10*n*n);
+		assertTrue(afterChange >= 10*n*n && afterChange <= 11*n*n, "recalibrating call flipped " + afterChange);
+	}
+
+	@Test
+	void samplesTheSameDistributionAsGlauber(){
+
+		for(double T : new double[]{2.0, 3.0}){
+
+			double[] glauberE = Ensembles.means(16, r -> Ensembles.randomLattice(16, T, r), "g", 200, 200, 2, Lattice::getEnergy);
+			double[] wolffE = Ensembles.means(16, r -> Ensembles.randomLattice(16, T, 100 + r), "w", 200, 200, 2, Lattice::getEnergy);
+			double[] swendsenWangE = Ensembles.means(16, r -> Ensembles.randomLattice(16, T, 200 + r), "s", 200, 200, 2, Lattice::getEnergy);
+
+			Ensembles.assertAgree("<E> of g and w at T = " + T, glauberE, wolffE);
+			Ensembles.assertAgree("<E> of g and s at T = " + T, glauberE, swendsenWangE);
+		}
+	}
+
+	//the point of the cluster updates: near Tc the integrated autocorrelation time of |M| is far shorter.
+	@Test
+	void decorrelatesFasterThanGlauberNearTc(){
+
+		double glauber = tau("g");
+		double wolff = tau("w");
+		double swendsenWang = tau("s");
+
+		assertTrue(wolff < glauber/4, "wolff tau " + wolff + " against glauber " + glauber);
+		assertTrue(swendsenWang < glauber/4, "swendsen-wang tau " + swendsenWang + " against glauber " + glauber);
+	}
+
+	private static double tau(String dynamics){
+
+		int n = 32;
+		Lattice lattice = Ensembles.randomLattice(n, 2.269, 1L);
+		lattice.dynamicsRepeated(500*n*n, "g");
+
+		double[] mags = new double[5000];
+		for(int i = 0; i < mags.length; i++){
+			lattice.dynamicsRepeated(n*n, dynamics);
+			mags[i] = Math.abs(lattice.getMagnetisation());
+		}
+		return Toolbox.integratedAutocorrelationTime(mags);
+	}
+}
@@ -0,0 +1,73 @@
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.function.IntFunction;
+import java.util.function.ToDoubleFunction;
+
+
+//independent runs of a dynamics for the equivalence tests. every replica starts from its own seed, so the spread of
+//the per-replica means is an honest error bar whatever the autocorrelation time of the dynamics.
+final class Ensembles {
+
+	private Ensembles(){
+	}
+
+	//the mean of observable over nSamples measurements sweepsBetween sweeps apart, after equibSweeps sweeps, for each
+	//of nReplicas lattices made by start(r).
+	static double[] means(int nReplicas, IntFunction<Lattice> start, String dynamics, int equibSweeps, int nSamples,
+			int sweepsBetween, ToDoubleFunction<Lattice> observable){
+
+		double[] means = new double[nReplicas];
+
+		for(int r = 0; r < nReplicas; r++){
+
+			Lattice lattice = start.apply(r);
+			int sweep = lattice.getN()*lattice.getN();
+			lattice.dynamicsRepeated(equibSweeps*sweep, dynamics);
+
+			double total = 0;
+			for(int i = 0; i < nSamples; i++){
+				lattice.dynamicsRepeated(sweepsBetween*sweep, dynamics);
+				total += observable.applyAsDouble(lattice);
+			}
+			means[r] = total/nSamples;
+			lattice.verifyTotals();
+		}
+		return means;
+	}
+
+	//an n x n lattice at temperature T with random spins and generator, both seeded from seed.
+	static Lattice randomLattice(int n, double T, long seed){
+		Lattice lattice = new Lattice(LatticePoint.randLatticeArray(n, seed), T);
+		lattice.setSeed(seed + 1000L);
+		return lattice;
+	}
+
+	static double mean(double[] values){
+		ObservableAccumulator.Moments moments = moments(values);
+		return moments.getMean();
+	}
+
+	//standard error of the mean of independent values, from the sample variance.
+	static double error(double[] values){
+		ObservableAccumulator.Moments moments = moments(values);
+		return Math.sqrt(moments.getVariance()/(values.length - 1));
+	}
+
+	//fails unless the two sets of replica means agree within 4 combined standard errors.
+	static void assertAgree(String what, double[] a, double[] b){
+
+		double difference = Math.abs(mean(a) - mean(b));
+		double sigma = Math.sqrt(error(a)*error(a) + error(b)*error(b));
+
+		assertTrue(difference <= 4*sigma + 1e-12, what + ": " + mean(a) + " +/- " + error(a) + " against "
+				+ mean(b) + " +/- " + error(b));
+	}
+
+	private static ObservableAccumulator.Moments moments(double[] values){
+		ObservableAccumulator.Moments moments = new ObservableAccumulator.Moments();
+		for(double v : values){
+			moments.add(v);
+		}
+		return moments;
+	}
+}
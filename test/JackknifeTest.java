@@ -0,0 +1,60 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+
+class JackknifeTest {
+
+	@Test
+	void matchesTheTextbookJackknife(){
+
+		LatticeRandom rand = new LatticeRandom.SplitMix(1L);
+		double[] samples = new double[90];
+		for(int i = 0; i < samples.length; i++){
+			samples[i] = 1000 + rand.nextDouble();
+		}
+
+		for(int binSize : new int[]{1, 3, 7, 45}){
+			double expected = leaveBinsOut(samples, 2.5, binSize);
+			assertEquals(expected, Jackknife.varianceError(samples, 2.5, binSize), 1e-6*expected);
+		}
+	}
+
+	@Test
+	void rejectsBinSizesWithoutTwoBins(){
+
+		double[] samples = new double[10];
+		for(int binSize : new int[]{-1, 0, 6, 10, 11}){
+			assertThrows(IllegalArgumentException.class, () -> Jackknife.varianceError(samples, 1.0, binSize),
+					"bin size " + binSize);
+		}
+		assertThrows(IllegalArgumentException.class, () -> Lattice.capacJacknife(new double[1], 1.0));
+	}
+
+	//takes the variance of the samples without each bin directly. with the samples offset by 1000 this loses a few
+	//digits to cancellation, hence the relative tolerance above.
+	private static double leaveBinsOut(double[] samples, double factor, int binSize){
+
+		int nBins = samples.length/binSize;
+		double[] estimates = new double[nBins];
+
+		for(int b = 0; b < nBins; b++){
+			double sum = 0, sumSq = 0;
+			int kept = 0;
+			for(int i = 0; i < nBins*binSize; i++){
+				if(i/binSize == b) continue;
+				sum += samples[i];
+				sumSq += samples[i]*samples[i];
+				kept++;
+			}
+			estimates[b] = factor*(sumSq/kept - (sum/kept)*(sum/kept));
+		}
+
+		double bar = Toolbox.avgArrayValue(estimates), total = 0;
+		for(double estimate : estimates){
+			total += (estimate - bar)*(estimate - bar);
+		}
+		return Math.sqrt(total);
+	}
+}
@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+class LatticeRandomTest {
+
+	private static final String[] CHECKPOINTABLE = {"splitmix", "xoshiro", "pcg"};
+
+	@Test
+	void restoringTheStateRepeatsTheStream(){
+
+		for(String kind : CHECKPOINTABLE){
+
+			LatticeRandom rand = LatticeRandom.create(kind, 5L);
+			rand.nextLong();
+			long[] state = rand.getState();
+			long[] first = draws(rand, 100);
+
+			LatticeRandom restored = LatticeRandom.create(kind, 99L);
+			restored.setState(state);
+			assertArrayEquals(first, draws(restored, 100), kind);
+			assertEquals(kind, restored.getKind());
+		}
+	}
+
+	@Test
+	void splitChildrenAreReproducibleAndIndependent(){
+
+		for(String kind : CHECKPOINTABLE){
+
+			LatticeRandom a = LatticeRandom.create(kind, 5L);
+			LatticeRandom b = LatticeRandom.create(kind, 5L);
+			LatticeRandom childA = a.split(), childB = b.split();
+
+			assertArrayEquals(draws(childA, 10), draws(childB, 10), kind);
+			assertNotEquals(draws(a.split(), 10)[0], draws(a.split(), 10)[0], kind);
+			assertNotEquals(draws(a, 10)[0], draws(childA, 10)[0], kind);
+		}
+	}
+
+	@Test
+	void drawsStayInRange(){
+
+		for(String kind : new String[]{"splitmix", "xoshiro", "pcg", "jdk"}){
+
+			LatticeRandom rand = LatticeRandom.create(kind, 3L);
+			int[] counts = new int[7];
+			for(int i = 0; i < 70000; i++){
+				double u = rand.nextDouble();
+				assertTrue(u >= 0 && u < 1, kind + " nextDouble " + u);
+				counts[rand.nextInt(7)]++;
+			}
+			for(int count : counts){
+				assertTrue(Math.abs(count - 10000) < 500, kind + " nextInt(7) count " + count);
+			}
+		}
+	}
+
+	@Test
+	void jdkGeneratorCantBeCheckpointed(){
+
+		LatticeRandom rand = LatticeRandom.create("jdk", 1L);
+		assertThrows(UnsupportedOperationException.class, rand::getState);
+		assertThrows(IllegalArgumentException.class, () -> LatticeRandom.create("mt", 1L));
+	}
+
+	private static long[] draws(LatticeRandom rand, int count){
+		long[] draws = new long[count];
+		for(int i = 0; i < count; i++){
+			draws[i] = rand.nextLong();
+		}
+		return draws;
+	}
+}
@@ -0,0 +1,108 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+
+class LatticeTest {
+
+	//every entry of the acceptance table is min(1, exp(-dE/kBT)) for dE = m*J, whatever T, J and kB are and in
+	//whichever order they were set.
+	@Test
+	void acceptanceTableMatchesTheBoltzmannWeight(){
+
+		Lattice lattice = new Lattice(LatticePoint.allPointsUp(4), 2.0);
+		assertTable(lattice);
+
+		double[][] settings = {{1.5, 1.0, 1.0}, {2.27, 0.7, 1.0}, {3.0, 1.0, 0.3}, {0.8, 2.5, 1.7}, {2.0, -1.0, 1.0}, {4.0, -0.4, 2.2}};
+		for(double[] setting : settings){
+			lattice.setT(setting[0]);
+			lattice.setJ(setting[1]);
+			lattice.setkB(setting[2]);
+			assertTable(lattice);
+		}
+
+		lattice.setkB(0.5);
+		lattice.setJ(1.3);
+		lattice.setT(1.1);
+		assertTable(lattice);
+	}
+
+	//the energy change of every swap of unlike spins is a multiple of J inside the table, and the table gives its
+	//boltzmann weight. on a lattice 2 across a pair shares two bonds, which reaches further than anywhere else.
+	@Test
+	void swapEnergiesStayInsideTheTable(){
+
+		for(int n : new int[]{2, 3, 4, 5}){
+			for(long seed = 0; seed < 20; seed++){
+
+				Lattice lattice = new Lattice(randomArray(n, seed), 1.7);
+				lattice.setJ(0.6);
+				lattice.setkB(1.4);
+
+				for(int k1 = 0; k1 < n*n; k1++){
+					for(int k2 = 0; k2 < n*n; k2++){
+
+						int i1 = k1/n, j1 = k1%n, i2 = k2/n, j2 = k2%n;
+						if(lattice.getPointState(i1, j1) == lattice.getPointState(i2, j2)) continue;
+
+						double before = lattice.systemEnergy();
+						lattice.spinSwap(i1, j1, i2, j2);
+						double deltaE = lattice.systemEnergy() - before;
+						lattice.spinSwap(i1, j1, i2, j2);
+
+						long units = Math.round(deltaE/lattice.getJ());
+						assertEquals(units*lattice.getJ(), deltaE, 1e-9);
+						assertTrue(Math.abs(units) <= Lattice.MAX_DELTA_UNITS, "swap changes the energy by " + units + " J");
+						assertEquals(expected(lattice, (int)units), lattice.acceptanceProbability((int)units), 1e-12);
+					}
+				}
+			}
+		}
+	}
+
+	//the parallel, multispin and cluster engines are sized for the lattice that started them, so a new array of
+	//another size has to start them again.
+	@Test
+	void everyDynamicsRunsAfterAResize(){
+
+		Lattice lattice = new Lattice(randomArray(8, 1L), 2.27);
+
+		for(int n : new int[]{8, 66, 12}){
+
+			lattice.setArray(randomArray(n, n));
+			assertEquals(n, lattice.getN());
+
+			for(String dynamics : new String[]{"g", "k", "l", "c", "p", "m", "w", "s"}){
+				lattice.dynamicsRepeated(2*n*n, dynamics);
+				lattice.verifyTotals();
+			}
+		}
+	}
+
+	private static void assertTable(Lattice lattice){
+		for(int m = -Lattice.MAX_DELTA_UNITS; m <= Lattice.MAX_DELTA_UNITS; m++){
+			assertEquals(expected(lattice, m), lattice.acceptanceProbability(m), 1e-12, "dE = " + m + " J");
+		}
+	}
+
+	private static double expected(Lattice lattice, int units){
+		double deltaE = units*lattice.getJ();
+		return deltaE <= 0 ? 1.0 : Math.min(1.0, Math.exp(-deltaE/(lattice.getkB()*lattice.getT())));
+	}
+
+	//random spins drawn from a given seed.
+	static LatticePoint[][] randomArray(int n, long seed){
+
+		Random rand = new Random(seed);
+		LatticePoint[][] array = new LatticePoint[n][n];
+		for(int i = 0; i < n; i++){
+			for(int j = 0; j < n; j++){
+				array[i][j] = new LatticePoint(rand.nextBoolean() ? 1 : -1);
+			}
+		}
+		return array;
+	}
+}
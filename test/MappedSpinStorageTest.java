@@ -0,0 +1,86 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class MappedSpinStorageTest {
+
+	@TempDir
+	Path dir;
+
+	//spins written through tiles of 4 rows land in the file in the PackedSpinStorage layout, and read back the same.
+	@Test
+	void spinsRoundTripThroughTheFile() throws IOException{
+
+		int n = 70;
+		Path file = dir.resolve("round_trip.spins");
+		PackedSpinStorage packed = new PackedSpinStorage(n);
+		LatticeRandom rand = new LatticeRandom.SplitMix(4L);
+
+		try(MappedSpinStorage mapped = new MappedSpinStorage(n, file, 64)){
+
+			for(int i = 0; i < n; i++){
+				for(int j = 0; j < n; j++){
+					int state = rand.nextDouble() < 0.5 ? 1 : -1;
+					mapped.set(i, j, state);
+					packed.set(i, j, state);
+				}
+			}
+			//rows 3 and 4 either side of a tile boundary, and the last column of a row either side of a word boundary.
+			mapped.flip(3, 69);
+			packed.flip(3, 69);
+			mapped.flip(4, 0);
+			packed.flip(4, 0);
+
+			for(int i = 0; i < n; i++){
+				for(int j = 0; j < n; j++){
+					assertEquals(packed.get(i, j), mapped.get(i, j), i + ", " + j);
+				}
+			}
+			mapped.force();
+		}
+
+		ByteBuffer bytes = ByteBuffer.wrap(Files.readAllBytes(file)).order(ByteOrder.nativeOrder());
+		long[] words = new long[bytes.remaining()/8];
+		bytes.asLongBuffer().get(words);
+		assertArrayEquals(packed.copyWords(), words);
+	}
+
+	//a lattice on mapped storage runs the same seeded dynamics as one on bytes, spin for spin.
+	@Test
+	void agreesWithByteStorage() throws IOException{
+
+		int n = 24;
+		try(MappedSpinStorage mapped = new MappedSpinStorage(n, dir.resolve("dynamics.spins"), 8L*3)){
+
+			SpinStorage bytes = new ByteSpinStorage(n);
+			mapped.fillRandom(new LatticeRandom.SplitMix(1L));
+			bytes.fillRandom(new LatticeRandom.SplitMix(1L));
+
+			Lattice onMapped = new Lattice(mapped, 2.27);
+			Lattice onBytes = new Lattice(bytes, 2.27);
+			onMapped.setSeed(2L);
+			onBytes.setSeed(2L);
+
+			for(String dynamics : new String[]{"g", "k", "l"}){
+				onMapped.dynamicsRepeated(20*n*n, dynamics);
+				onBytes.dynamicsRepeated(20*n*n, dynamics);
+				onMapped.verifyTotals();
+				assertEquals(onBytes.getEnergy(), onMapped.getEnergy(), 0.0, dynamics);
+				for(int i = 0; i < n; i++){
+					for(int j = 0; j < n; j++){
+						assertEquals(bytes.get(i, j), mapped.get(i, j), dynamics + " " + i + ", " + j);
+					}
+				}
+			}
+		}
+	}
+}
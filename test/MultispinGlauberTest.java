@@ -0,0 +1,70 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+
+
+class MultispinGlauberTest {
+
+	@Test
+	void keepsTheRunningTotals(){
+
+		for(int n : new int[]{2, 3, 4, 6, 8, 62, 63, 64, 66, 128, 130}){
+			for(boolean packed : new boolean[]{false, true}){
+				for(double J : new double[]{1.0, -1.0}){
+
+					Lattice lattice = lattice(n, 2.27, packed, n);
+					lattice.setJ(J);
+					lattice.dynamicsRepeated(10*n*n, "m");
+
+					lattice.verifyTotals();
+					assertEquals(10L*n*n, lattice.getMovesAttempted());
+				}
+			}
+		}
+	}
+
+	@Test
+	void unsupportedLatticesFallBackToSerialGlauber(){
+
+		Lattice odd = Ensembles.randomLattice(7, 2.27, 1L);
+		assertFalse(MultispinGlauber.supports(odd));
+		odd.dynamicsRepeated(10*49, "m");
+		odd.verifyTotals();
+		assertEquals(10L*49, odd.getMovesAttempted());
+
+		Lattice open = Ensembles.randomLattice(8, 2.27, 1L);
+		open.setBoundary(Boundary.OPEN);
+		assertFalse(MultispinGlauber.supports(open));
+		open.dynamicsRepeated(10*64, "m");
+		open.verifyTotals();
+		assertEquals(10L*64, open.getMovesAttempted());
+	}
+
+	@Test
+	void samplesTheSameDistributionAsSerialGlauber(){
+
+		for(double T : new double[]{1.8, 2.27, 3.0}){
+			for(boolean packed : new boolean[]{false, true}){
+
+				double[] serialE = Ensembles.means(16, r -> lattice(16, T, false, r), "g", 200, 200, 2, Lattice::getEnergy);
+				double[] multispinE = Ensembles.means(16, r -> lattice(16, T, packed, 100 + r), "m", 200, 200, 2, Lattice::getEnergy);
+				Ensembles.assertAgree("<E> at T = " + T, serialE, multispinE);
+
+				double[] serialM = Ensembles.means(16, r -> lattice(16, T, false, 200 + r), "g", 200, 200, 2, l -> Math.abs(l.getMagnetisation()));
+				double[] multispinM = Ensembles.means(16, r -> lattice(16, T, packed, 300 + r), "m", 200, 200, 2, l -> Math.abs(l.getMagnetisation()));
+				Ensembles.assertAgree("<|M|> at T = " + T, serialM, multispinM);
+			}
+		}
+	}
+
+	//an n x n lattice of random spins in byte or packed storage.
+	private static Lattice lattice(int n, double T, boolean packed, long seed){
+
+		SpinStorage spins = packed ? new PackedSpinStorage(n) : new ByteSpinStorage(n);
+		spins.fillRandom(new LatticeRandom.SplitMix(seed));
+		Lattice lattice = new Lattice(spins, T);
+		lattice.setSeed(seed + 1000L);
+		return lattice;
+	}
+}
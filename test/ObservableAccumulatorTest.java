@@ -0,0 +1,79 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+
+class ObservableAccumulatorTest {
+
+	//accumulators over the two halves of a series, split anywhere and merged either way round, give the same
+	//observables as one over the whole series and as a direct two-pass computation.
+	@Test
+	void mergedHalvesMatchTheWholeSeries(){
+
+		int nSamples = 1000, systemSize = 16;
+		double T = 2.27;
+		double[] energies = new double[nSamples], magnetisations = new double[nSamples];
+		LatticeRandom rand = new LatticeRandom.SplitMix(8L);
+		for(int i = 0; i < nSamples; i++){
+			//offset like real lattice energies, where a naive sum of squares would lose digits.
+			energies[i] = -400.0 + 30.0*rand.nextDouble();
+			magnetisations[i] = 256.0*(2.0*rand.nextDouble() - 1.0);
+		}
+
+		ObservableAccumulator whole = new ObservableAccumulator();
+		for(int i = 0; i < nSamples; i++){
+			whole.add(energies[i], magnetisations[i]);
+		}
+		assertAgrees(energies, magnetisations, T, systemSize, whole, "whole");
+
+		for(int split : new int[]{0, 1, 137, 500, 999, 1000}){
+
+			ObservableAccumulator first = new ObservableAccumulator(), second = new ObservableAccumulator();
+			for(int i = 0; i < nSamples; i++){
+				if(i < split) first.add(energies[i], magnetisations[i]);
+				else second.add(energies[i], magnetisations[i]);
+			}
+			ObservableAccumulator firstThenSecond = new ObservableAccumulator(), secondThenFirst = new ObservableAccumulator();
+			firstThenSecond.merge(first);
+			firstThenSecond.merge(second);
+			secondThenFirst.merge(second);
+			secondThenFirst.merge(first);
+
+			assertAgrees(energies, magnetisations, T, systemSize, firstThenSecond, "split at " + split);
+			assertAgrees(energies, magnetisations, T, systemSize, secondThenFirst, "split at " + split + ", reversed");
+		}
+	}
+
+	private static void assertAgrees(double[] energies, double[] magnetisations, double T, int systemSize,
+			ObservableAccumulator acc, String what){
+
+		int n = energies.length;
+		double meanE = mean(energies), meanM = mean(magnetisations);
+		double varE = 0.0, varM = 0.0, meanM2 = 0.0, meanM4 = 0.0;
+		for(int i = 0; i < n; i++){
+			varE += (energies[i] - meanE)*(energies[i] - meanE)/n;
+			varM += (magnetisations[i] - meanM)*(magnetisations[i] - meanM)/n;
+			double m2 = magnetisations[i]*magnetisations[i];
+			meanM2 += m2/n;
+			meanM4 += m2*m2/n;
+		}
+
+		assertEquals(n, acc.getCount(), what);
+		assertEquals(meanE, acc.getMeanEnergy(), 1e-9*Math.abs(meanE), what);
+		assertEquals(meanM, acc.getMeanMagnetisation(), 1e-9*Math.abs(meanM), what);
+		assertEquals(varE, acc.getEnergyVariance(), 1e-9*varE, what);
+		assertEquals(varM, acc.getMagnetisationVariance(), 1e-9*varM, what);
+		assertEquals(varM/(systemSize*systemSize*T), acc.getSusceptibility(T, systemSize), 1e-9*varM/(systemSize*systemSize*T), what);
+		assertEquals(varE/(T*T), acc.getHeatCapacity(T), 1e-9*varE/(T*T), what);
+		double binder = 1.0 - meanM4/(3.0*meanM2*meanM2);
+		assertEquals(binder, acc.getBinderCumulant(), 1e-9, what);
+	}
+
+	private static double mean(double[] values){
+		double sum = 0.0;
+		for(double v : values){
+			sum += v;
+		}
+		return sum/values.length;
+	}
+}
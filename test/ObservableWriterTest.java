@@ -0,0 +1,114 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+
+class ObservableWriterTest {
+
+	@TempDir
+	Path dir;
+
+	@Test
+	void writesEverySampleInOrder() throws IOException{
+
+		Path file = dir.resolve("series.obs");
+		try(ObservableWriter writer = new ObservableWriter(file, 4, 2, false)){
+			for(int i = 0; i < 10; i++){
+				writer.record(2.0, -i, i);
+			}
+		}
+
+		List<String> rows = rows(file);
+		assertEquals(10, rows.size());
+		for(int i = 0; i < 10; i++){
+			assertEquals("2.0, " + (double)-i + ", " + (double)i, rows.get(i));
+		}
+	}
+
+	@Test
+	void flushPutsTheSamplesOnDisk() throws IOException{
+
+		Path file = dir.resolve("series.obs");
+		try(ObservableWriter writer = new ObservableWriter(file, 4, 2, false)){
+			for(int i = 0; i < 6; i++){
+				writer.record(2.0, i, i);
+			}
+			writer.flush();
+			assertEquals(6, rows(file).size());
+		}
+	}
+
+	//a resumed run keeps the samples its checkpoint covers and appends the rest after them.
+	@Test
+	void keepFirstThenAppendContinuesTheSeries() throws IOException{
+
+		Path file = dir.resolve("series.obs");
+		try(ObservableWriter writer = new ObservableWriter(file, 3, 2, false)){
+			for(int i = 0; i < 5; i++){
+				writer.record(1.0, i, 0);
+				writer.record(2.0, i, 0);
+				writer.record(3.0, i, 0);
+			}
+		}
+
+		Map<Double, Integer> kept = new HashMap<Double, Integer>();
+		kept.put(1.0, 5);
+		kept.put(2.0, 2);
+		ObservableWriter.keepFirst(file, kept);
+
+		List<String> rows = rows(file);
+		assertEquals(7, rows.size());
+		assertEquals("1.0, 0.0, 0.0", rows.get(0));
+		assertEquals("2.0, 1.0, 0.0", rows.get(3));
+		assertEquals("1.0, 4.0, 0.0", rows.get(6));
+
+		try(ObservableWriter writer = new ObservableWriter(file, true)){
+			writer.record(2.0, 2, 0);
+		}
+		rows = rows(file);
+		assertEquals(8, rows.size());
+		assertEquals("2.0, 2.0, 0.0", rows.get(7));
+	}
+
+	//a file killed part way through a chunk exports the complete chunks before it, and a resume can cut it back.
+	@Test
+	void truncatedFilesStopAtTheLastCompleteChunk() throws IOException{
+
+		Path file = dir.resolve("series.obs");
+		try(ObservableWriter writer = new ObservableWriter(file, 4, 2, false)){
+			for(int i = 0; i < 8; i++){
+				writer.record(2.0, i, i);
+			}
+		}
+
+		//each chunk of 4 rows is a 4 byte count and 3 columns of 4 doubles.
+		byte[] whole = Files.readAllBytes(file);
+		for(int cut : new int[]{1, 3, 4, 20, 4 + 3*4*8 - 1}){
+			Files.write(file, Arrays.copyOf(whole, whole.length - cut));
+			List<String> rows = rows(file);
+			assertEquals(4, rows.size(), "cut " + cut);
+			assertEquals("2.0, 3.0, 3.0", rows.get(3));
+		}
+
+		Map<Double, Integer> kept = new HashMap<Double, Integer>();
+		kept.put(2.0, 8);
+		ObservableWriter.keepFirst(file, kept);
+		assertEquals(4, rows(file).size());
+	}
+
+	static List<String> rows(Path binary) throws IOException{
+		Path text = binary.resolveSibling(binary.getFileName() + ".txt");
+		ObservableWriter.exportText(binary, text);
+		return new ArrayList<String>(Files.readAllLines(text));
+	}
+}
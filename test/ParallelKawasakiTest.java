@@ -0,0 +1,59 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+import org.junit.jupiter.api.Test;
+
+
+class ParallelKawasakiTest {
+
+	@Test
+	void conservesTheMagnetisation(){
+
+		for(int n : new int[]{4, 6, 8, 16, 33}){
+
+			Lattice lattice = Ensembles.randomLattice(n, 2.27, n);
+			double startM = lattice.getMagnetisation();
+			lattice.dynamicsRepeated(20*n*n, "p");
+
+			lattice.verifyTotals();
+			assertEquals(startM, lattice.getMagnetisation(), 0.0);
+			assertEquals(startM, lattice.systemMagnetisation(), 0.0);
+		}
+	}
+
+	@Test
+	void unsupportedLatticesFallBackToLocalKawasaki(){
+
+		Lattice lattice = Ensembles.randomLattice(8, 2.27, 1L);
+		lattice.setBoundary(Boundary.OPEN);
+		assertFalse(ParallelKawasaki.supports(lattice));
+
+		double startM = lattice.getMagnetisation();
+		lattice.dynamicsRepeated(10*64, "p");
+		lattice.verifyTotals();
+		assertEquals(startM, lattice.getMagnetisation(), 0.0);
+		assertEquals(10L*64, lattice.getMovesAttempted());
+	}
+
+	//every ensemble starts from the same configurations, so the same magnetisations, and only the random numbers of
+	//the dynamics differ. conserved local moves relax slowly, hence the long equilibration.
+	@Test
+	void samplesTheSameDistributionAsSerialKawasaki(){
+
+		for(double T : new double[]{3.0, 4.0}){
+
+			double[] parallelE = Ensembles.means(16, r -> start(T, r, 1), "p", 1000, 200, 2, Lattice::getEnergy);
+			double[] serialE = Ensembles.means(16, r -> start(T, r, 2), "k", 1000, 200, 2, Lattice::getEnergy);
+			double[] localE = Ensembles.means(16, r -> start(T, r, 3), "l", 1000, 200, 2, Lattice::getEnergy);
+
+			Ensembles.assertAgree("<E> of p and k at T = " + T, parallelE, serialE);
+			Ensembles.assertAgree("<E> of p and l at T = " + T, parallelE, localE);
+		}
+	}
+
+	private static Lattice start(double T, int replica, int stream){
+		Lattice lattice = Ensembles.randomLattice(16, T, replica);
+		lattice.setSeed(1000L*stream + replica);
+		return lattice;
+	}
+}
@@ -0,0 +1,72 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import org.junit.jupiter.api.Test;
+
+
+class ReplicaBatchTest {
+
+	@Test
+	void keepsTheRunningTotals(){
+
+		for(int n : new int[]{2, 3, 8, 17}){
+			for(int nReplicas : new int[]{1, 7, 64}){
+				for(double T : new double[]{0.5, 2.27, 10.0}){
+
+					ReplicaBatch batch = new ReplicaBatch(n, nReplicas, T, new LatticeRandom.SplitMix(n*nReplicas));
+					batch.sweeps(20);
+					batch.verifyTotals();
+				}
+			}
+		}
+	}
+
+	@Test
+	void rejectsReplicaCountsOutOfRange(){
+		assertThrows(IllegalArgumentException.class, () -> new ReplicaBatch(8, 0, 2.0, new LatticeRandom.SplitMix(1L)));
+		assertThrows(IllegalArgumentException.class, () -> new ReplicaBatch(8, 65, 2.0, new LatticeRandom.SplitMix(1L)));
+	}
+
+	@Test
+	void samplesEveryReplica(){
+
+		ReplicaBatch batch = new ReplicaBatch(8, 5, 2.27, new LatticeRandom.SplitMix(1L));
+		batch.sample(10, 30, 2);
+
+		assertEquals(5, batch.getSusceptibilities().length);
+		assertEquals(5, batch.getCapacities().length);
+		for(int r = 0; r < 5; r++){
+			assertEquals(30, batch.getEnergies(r).length);
+			assertEquals(batch.getEnergy(r), batch.getEnergies(r)[29], 0.0);
+			assertEquals(batch.getMagnetisation(r), batch.getMagnetisms(r)[29], 0.0);
+		}
+	}
+
+	//each replica is its own chain, so the batch should match the same number of separate lattices.
+	@Test
+	void agreesWithSeparateLattices(){
+
+		int n = 16, nReplicas = 32;
+
+		for(double T : new double[]{1.8, 3.0}){
+
+			ReplicaBatch batch = new ReplicaBatch(n, nReplicas, T, new LatticeRandom.SplitMix(1L));
+			batch.sample(200, 200, 2);
+
+			double[] batchE = new double[nReplicas], batchM = new double[nReplicas];
+			for(int r = 0; r < nReplicas; r++){
+				batchE[r] = Toolbox.avgArrayValue(batch.getEnergies(r));
+				for(double m : batch.getMagnetisms(r)){
+					batchM[r] += Math.abs(m)/200;
+				}
+			}
+
+			double[] latticeE = Ensembles.means(nReplicas, r -> Ensembles.randomLattice(n, T, r), "g", 200, 200, 2, Lattice::getEnergy);
+			double[] latticeM = Ensembles.means(nReplicas, r -> Ensembles.randomLattice(n, T, 100 + r), "g", 200, 200, 2, l -> Math.abs(l.getMagnetisation()));
+
+			Ensembles.assertAgree("<E> at T = " + T, latticeE, batchE);
+			Ensembles.assertAgree("<|M|> at T = " + T, latticeM, batchM);
+			assertEquals(ReplicaBatch.replicaError(batchE), Ensembles.error(batchE), 1e-12);
+		}
+	}
+}
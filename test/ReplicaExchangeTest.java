@@ -0,0 +1,83 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+class ReplicaExchangeTest {
+
+	@Test
+	void geometricLadderRunsFromTMinToTMax(){
+
+		double[] ladder = ReplicaExchange.geometricLadder(1.5, 3.5, 5);
+		assertEquals(5, ladder.length);
+		assertEquals(1.5, ladder[0], 1e-12);
+		assertEquals(3.5, ladder[4], 1e-12);
+		for(int k = 1; k < ladder.length; k++){
+			assertEquals(ladder[1]/ladder[0], ladder[k]/ladder[k - 1], 1e-12);
+		}
+
+		assertArrayEquals(new double[]{1.5}, ReplicaExchange.geometricLadder(1.5, 3.5, 1));
+		assertThrows(IllegalArgumentException.class, () -> ReplicaExchange.geometricLadder(1.5, 3.5, 0));
+	}
+
+	//swaps only move lattices between rungs: every rung keeps its own temperature and holds a different lattice.
+	@Test
+	void swapsKeepOneLatticeAtEachTemperature(){
+
+		double[] ladder = ReplicaExchange.geometricLadder(2.0, 2.6, 4);
+		ReplicaExchange pt = new ReplicaExchange(8, ladder, "g", 1L, 2);
+		try{
+			pt.rounds(200, 64);
+
+			for(int k = 0; k < ladder.length; k++){
+				Lattice lattice = pt.getLattice(k);
+				assertEquals(ladder[k], lattice.getT(), 0.0);
+				lattice.verifyTotals();
+				for(int other = 0; other < k; other++){
+					assertNotSame(pt.getLattice(other), lattice);
+				}
+			}
+
+			for(double rate : pt.getAcceptanceRates()){
+				assertTrue(rate > 0 && rate <= 1, "acceptance rate " + rate);
+			}
+		}finally{
+			pt.shutdown();
+		}
+	}
+
+	//swapping must leave each rung sampling the canonical distribution at its own temperature.
+	@Test
+	void eachRungSamplesItsOwnTemperature(){
+
+		int n = 8;
+		double[] ladder = ReplicaExchange.geometricLadder(2.0, 3.0, 4);
+		int nRuns = 16;
+		double[] coldE = new double[nRuns], hotE = new double[nRuns];
+
+		for(int r = 0; r < nRuns; r++){
+
+			ReplicaExchange pt = new ReplicaExchange(n, ladder, "g", r, 1);
+			try{
+				pt.rounds(200, n*n);
+				for(int i = 0; i < 400; i++){
+					pt.round(n*n);
+					coldE[r] += pt.getLattice(0).getEnergy()/400;
+					hotE[r] += pt.getLattice(ladder.length - 1).getEnergy()/400;
+				}
+			}finally{
+				pt.shutdown();
+			}
+		}
+
+		double[] glauberColdE = Ensembles.means(nRuns, r -> Ensembles.randomLattice(n, ladder[0], r), "g", 200, 400, 1, Lattice::getEnergy);
+		double[] glauberHotE = Ensembles.means(nRuns, r -> Ensembles.randomLattice(n, ladder[3], r), "g", 200, 400, 1, Lattice::getEnergy);
+
+		Ensembles.assertAgree("<E> at T = " + ladder[0], glauberColdE, coldE);
+		Ensembles.assertAgree("<E> at T = " + ladder[3], glauberHotE, hotE);
+	}
+}
@@ -0,0 +1,60 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+
+class ScalingCampaignTest {
+
+	//with one size and segments of one temperature the generators are split in the same order as a sweep's, so the
+	//campaign has to give the sweep's results to the last digit.
+	@Test
+	void singleTemperatureSegmentsMatchATemperatureSweep(){
+
+		int n = 8;
+		TemperatureSweep sweeper = new TemperatureSweep(n, "g", 2.0, 3.0, 3);
+		sweeper.setThresholds(20*n*n, n*n);
+		sweeper.setNSamples(64);
+		sweeper.setSeed(7L);
+		sweeper.setNThreads(2);
+		sweeper.run(d -> {});
+
+		ScalingCampaign campaign = new ScalingCampaign(new int[]{n}, "g", 2.0, 3.0, 3);
+		campaign.setSweeps(20, 5, 1);
+		campaign.setSegmentLength(1);
+		campaign.setNSamples(64);
+		campaign.setSeed(7L);
+		campaign.setNThreads(2);
+		campaign.run(d -> {});
+
+		assertArrayEquals(sweeper.getTemperatures(), campaign.getTemperatures());
+		assertArrayEquals(sweeper.getSusceptibilities(), campaign.getSusceptibilities(0));
+		assertArrayEquals(sweeper.getSusceptibilityErrors(), campaign.getSusceptibilityErrors(0));
+		assertArrayEquals(sweeper.getCapacities(), campaign.getCapacities(0));
+		assertArrayEquals(sweeper.getBinderCumulants(), campaign.getBinderCumulants(0));
+	}
+
+	//the first temperature of a segment is capped by the equilibration sweeps, the rest by the re-equilibration.
+	@Test
+	void adaptiveSamplingKeepsToTheCaps(){
+
+		ScalingCampaign campaign = new ScalingCampaign(new int[]{16, 8}, "g", 2.0, 3.0, 4);
+		campaign.setSweeps(10, 4, 1);
+		campaign.setSegmentLength(2);
+		campaign.setNSamples(32);
+		campaign.setAdaptiveSampling(true);
+		campaign.setSeed(11L);
+		campaign.setNThreads(2);
+		campaign.run(d -> {});
+
+		for(int s = 0; s < 2; s++){
+			for(int d = 0; d < 4; d++){
+				int equibCap = Math.max(32, TemperatureSweep.ADAPTIVE_CAP*(d%2 == 0 ? 10 : 4));
+				int equilibration = campaign.getEquilibrationSweeps(s)[d], thinning = campaign.getThinningSweeps(s)[d];
+				assertTrue(equilibration >= 32 && equilibration <= equibCap, "equilibration " + equilibration);
+				assertTrue(thinning >= 1 && thinning <= TemperatureSweep.ADAPTIVE_CAP, "thinning " + thinning);
+				assertTrue(campaign.getObservables(s, d) != null);
+			}
+		}
+	}
+}
@@ -0,0 +1,59 @@
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+
+class SpinStorageTest {
+
+	//the flat byte array is several times smaller than the LatticePoint grid, and bit packing another 8 times.
+	@Test
+	void storagesShrinkTheFootprint(){
+
+		for(int n : new int[]{64, 100, 1024}){
+
+			long points = LatticePoint.memoryFootprint(n);
+			long bytes = new ByteSpinStorage(n).memoryFootprint();
+			long packed = new PackedSpinStorage(n).memoryFootprint();
+
+			assertTrue(bytes >= (long)n*n && points > 16*bytes, "n = " + n + ": " + points + " against " + bytes);
+			assertTrue(packed >= (long)n*n/8 && bytes > 6*packed, "n = " + n + ": " + bytes + " against " + packed);
+		}
+	}
+
+	//both layouts hold the same spins, rows that don't fill whole words included.
+	@Test
+	void storagesAgree(){
+
+		for(int n : new int[]{3, 63, 64, 65, 130}){
+
+			SpinStorage bytes = new ByteSpinStorage(n), packed = new PackedSpinStorage(n);
+			bytes.fill(1);
+			packed.fill(1);
+			Random rand = new Random(n);
+			for(int k = 0; k < 4*n*n; k++){
+				int i = rand.nextInt(n), j = rand.nextInt(n);
+				if(rand.nextBoolean()){
+					int state = rand.nextBoolean() ? 1 : -1;
+					bytes.set(i, j, state);
+					packed.set(i, j, state);
+				}else{
+					bytes.flip(i, j);
+					packed.flip(i, j);
+				}
+			}
+
+			byte[] byteRow = new byte[n + 1], packedRow = new byte[n + 1];
+			for(int i = 0; i < n; i++){
+				bytes.copyRow(i, byteRow, 1);
+				packed.copyRow(i, packedRow, 1);
+				for(int j = 0; j < n; j++){
+					assertEquals(bytes.get(i, j), packed.get(i, j), n + ": " + i + ", " + j);
+					assertEquals(byteRow[j + 1], packedRow[j + 1]);
+				}
+			}
+		}
+	}
+}
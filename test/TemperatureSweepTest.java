@@ -0,0 +1,86 @@
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+
+class TemperatureSweepTest {
+
+	//near Tc tau_int of glauber dynamics at L = 32 is several sweeps, so adaptive thinning has to lengthen a fixed
+	//thinning of one sweep, up to its cap.
+	@Test
+	void adaptiveThinningCanOutgrowTheFixedThinning(){
+
+		int n = 32;
+		TemperatureSweep sweeper = new TemperatureSweep(n, "g", 2.25, 2.35, 2);
+		sweeper.setThresholds(100*n*n, n*n);
+		sweeper.setNSamples(32);
+		sweeper.setSeed(3L);
+		sweeper.setNThreads(2);
+		sweeper.setAdaptiveSampling(true);
+		sweeper.run(d -> {});
+
+		int longest = 0;
+		for(int d = 0; d < 2; d++){
+			int thinning = sweeper.getThinningSweeps()[d];
+			int equilibration = sweeper.getEquilibrationSweeps()[d];
+			assertTrue(thinning >= 1 && thinning <= TemperatureSweep.ADAPTIVE_CAP, "thinning " + thinning);
+			assertTrue(equilibration >= 32 && equilibration <= TemperatureSweep.ADAPTIVE_CAP*100, "equilibration " + equilibration);
+			longest = Math.max(longest, thinning);
+		}
+		assertTrue(longest > 1, "adaptive thinning never went past the fixed thinning");
+	}
+
+	//every temperature has its own generator, split from the master seed in temperature order, so the number of
+	//threads can't change the results.
+	@Test
+	void resultsDoNotDependOnTheNumberOfThreads(){
+
+		TemperatureSweep serial = sweep(1);
+		TemperatureSweep parallel = sweep(4);
+
+		assertArrayEquals(serial.getSusceptibilities(), parallel.getSusceptibilities());
+		assertArrayEquals(serial.getSusceptibilityErrors(), parallel.getSusceptibilityErrors());
+		assertArrayEquals(serial.getCapacities(), parallel.getCapacities());
+		assertArrayEquals(serial.getCapacityErrors(), parallel.getCapacityErrors());
+		assertArrayEquals(serial.getBinderCumulants(), parallel.getBinderCumulants());
+	}
+
+	//progress comes from the calling thread, counting up once per temperature.
+	@Test
+	void progressIsReportedInOrderFromTheCallingThread(){
+
+		int nDatums = 8;
+		TemperatureSweep sweeper = new TemperatureSweep(8, "g", 2.0, 3.0, nDatums);
+		sweeper.setThresholds(10*64, 64);
+		sweeper.setNSamples(16);
+		sweeper.setNThreads(4);
+
+		Thread caller = Thread.currentThread();
+		List<Integer> reported = new ArrayList<Integer>();
+		sweeper.run(i -> {
+			assertTrue(Thread.currentThread() == caller, "progress reported from " + Thread.currentThread().getName());
+			reported.add(i);
+		});
+
+		assertEquals(nDatums, reported.size());
+		for(int i = 0; i < nDatums; i++){
+			assertEquals(i, reported.get(i).intValue());
+		}
+	}
+
+	private static TemperatureSweep sweep(int nThreads){
+
+		TemperatureSweep sweeper = new TemperatureSweep(8, "g", 1.5, 3.5, 8);
+		sweeper.setThresholds(20*64, 2*64);
+		sweeper.setNSamples(64);
+		sweeper.setSeed(9L);
+		sweeper.setNThreads(nThreads);
+		sweeper.run(d -> {});
+		return sweeper;
+	}
+}